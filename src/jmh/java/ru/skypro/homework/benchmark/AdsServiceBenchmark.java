@@ -0,0 +1,91 @@
+package ru.skypro.homework.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.skypro.homework.HomeworkApplication;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.AdsFilter;
+import ru.skypro.homework.dto.ResponseWrapperAds;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лента и поиск объявлений через AdsServiceImpl на встроенной H2 с заранее заполненным каталогом
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdsServiceBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000", "100000"})
+    public int catalogueSize;
+
+    private ConfigurableApplicationContext context;
+
+    private AdsService adsService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(HomeworkApplication.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "logging.level.root=warn")
+                .run();
+        adsService = context.getBean(AdsService.class);
+
+        UserEntity author = new UserEntity();
+        author.setEmail("benchmark@mail.ru");
+        author.setPassword("");
+        author = context.getBean(UserRepository.class).save(author);
+        List<Object[]> rows = new ArrayList<>(catalogueSize);
+        for (int i = 1; i <= catalogueSize; i++) {
+            rows.add(new Object[]{author.getId(), "Объявление " + i, i, "Описание объявления " + i});
+        }
+        context.getBean(JdbcTemplate.class)
+                .batchUpdate("INSERT INTO ads (author_id, title, price, description) VALUES (?, ?, ?, ?)", rows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Первая страница ленты
+     */
+    @Benchmark
+    public ResponseWrapperAds<Ads> firstPage() {
+        return adsService.getAllAds(new AdsFilter(), null, PAGE_SIZE);
+    }
+
+    /**
+     * Страница из середины ленты, курсор не зависит от глубины
+     */
+    @Benchmark
+    public ResponseWrapperAds<Ads> middlePage() {
+        return adsService.getAllAds(new AdsFilter(), String.valueOf(catalogueSize / 2), PAGE_SIZE);
+    }
+
+    /**
+     * Поиск по подстроке названия
+     */
+    @Benchmark
+    public ResponseWrapperAds<Ads> searchByTitle() {
+        AdsFilter filter = new AdsFilter();
+        filter.setTitle("ление 12");
+        return adsService.getAllAds(filter, null, PAGE_SIZE);
+    }
+}
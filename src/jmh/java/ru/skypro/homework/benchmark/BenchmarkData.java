@@ -0,0 +1,66 @@
+package ru.skypro.homework.benchmark;
+
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.CommentEntity;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.entity.UserEntity;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Тестовые данные для бенчмарков: сущности с заполненными связями, как после загрузки из базы
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static UserEntity user(int id) {
+        UserEntity user = new UserEntity();
+        user.setId(id);
+        user.setFirstName("Имя" + id);
+        user.setLastName("Фамилия" + id);
+        user.setEmail("user" + id + "@mail.ru");
+        user.setPhone("+7 900 000-00-00");
+        return user;
+    }
+
+    static List<AdsEntity> ads(int size) {
+        UserEntity author = user(1);
+        List<AdsEntity> ads = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            AdsEntity adsEntity = new AdsEntity();
+            adsEntity.setId(i);
+            adsEntity.setTitle("Объявление " + i);
+            adsEntity.setDescription("Описание объявления " + i);
+            adsEntity.setPrice(i * 10);
+            adsEntity.setAuthor(author);
+            if (i % 2 == 0) {
+                ImageEntity image = new ImageEntity();
+                image.setId(i);
+                adsEntity.setImageEntity(image);
+            }
+            ads.add(adsEntity);
+        }
+        return ads;
+    }
+
+    static List<CommentEntity> comments(int size) {
+        UserEntity author = user(1);
+        AdsEntity ad = ads(1).get(0);
+        LocalDateTime now = LocalDateTime.now();
+        List<CommentEntity> comments = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            CommentEntity comment = new CommentEntity();
+            comment.setId(i);
+            comment.setAd(ad);
+            comment.setAuthor(author);
+            comment.setText("Комментарий " + i);
+            comment.setCreatedAt(now.minusMinutes(i));
+            comments.add(comment);
+        }
+        return comments;
+    }
+}
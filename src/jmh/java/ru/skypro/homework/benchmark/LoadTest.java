@@ -0,0 +1,177 @@
+package ru.skypro.homework.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.skypro.homework.HomeworkApplication;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест ленты и карточки объявления на потоках Tomcat и на виртуальных потоках.
+ * <br> Запуск: mvn -Pbenchmark test-compile exec:exec@load-test
+ * <br> Параметры: -Dload.concurrency (500), -Dload.duration (20 секунд), -Dload.catalogue (1000),
+ * остальные аргументы вида name=value передаются приложению как свойства.
+ * Результат - запросов в секунду и перцентили задержек, пишется в target/load-test-result.json.
+ * Режим виртуальных потоков требует Java 21, на более старой Java он пропускается
+ */
+public final class LoadTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("load.concurrency", 500);
+        Duration duration = Duration.ofSeconds(Integer.getInteger("load.duration", 20));
+        int catalogue = Integer.getInteger("load.catalogue", 1000);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            String mode = virtual ? "virtual" : "platform";
+            try {
+                results.put(mode, run(virtual, concurrency, duration, catalogue, args));
+            } catch (Exception e) {
+                System.out.println(mode + ": пропущен - " + rootMessage(e));
+                results.put(mode, Map.of("skipped", rootMessage(e)));
+            }
+        }
+        Path output = Path.of("target", "load-test-result.json");
+        Files.createDirectories(output.getParent());
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), results);
+        System.out.println("Результат сохранен в " + output.toAbsolutePath());
+    }
+
+    private static Map<String, Object> run(boolean virtual, int concurrency, Duration duration,
+                                           int catalogue, String[] args) throws Exception {
+        List<String> properties = new ArrayList<>(List.of(
+                "server.port=0",
+                "spring.threads.virtual.enabled=" + virtual,
+                "spring.datasource.url=jdbc:h2:mem:load" + virtual + ";DB_CLOSE_DELAY=-1",
+                "logging.level.root=warn"));
+        properties.addAll(Arrays.asList(args));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(HomeworkApplication.class)
+                .properties(properties.toArray(new String[0]))
+                .run()) {
+            String base = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            ExecutorService clientExecutor = Executors.newFixedThreadPool(16);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientExecutor)
+                    .build();
+            String token = seed(context, client, base, catalogue);
+
+            long deadline = System.nanoTime() + duration.toNanos();
+            AtomicLong errors = new AtomicLong();
+            ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(workers.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        String path = ThreadLocalRandom.current().nextBoolean()
+                                ? "/ads/all"
+                                : "/ads/" + (1 + ThreadLocalRandom.current().nextInt(catalogue));
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+                                .header("Authorization", "Bearer " + token)
+                                .build();
+                        long start = System.nanoTime();
+                        try {
+                            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+            long[] all = new long[0];
+            for (Future<long[]> future : futures) {
+                long[] latencies = future.get();
+                int offset = all.length;
+                all = Arrays.copyOf(all, offset + latencies.length);
+                System.arraycopy(latencies, 0, all, offset, latencies.length);
+            }
+            workers.shutdown();
+            clientExecutor.shutdown();
+            Arrays.sort(all);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("concurrency", concurrency);
+            result.put("requests", all.length);
+            result.put("errors", errors.get());
+            result.put("throughputPerSecond", all.length / (double) duration.toSeconds());
+            result.put("p50Millis", percentile(all, 0.50));
+            result.put("p99Millis", percentile(all, 0.99));
+            System.out.println((virtual ? "virtual" : "platform") + ": " + result);
+            return result;
+        }
+    }
+
+    /**
+     * Заполнить каталог и получить токен пользователя
+     */
+    private static String seed(ConfigurableApplicationContext context, HttpClient client,
+                               String base, int catalogue) throws Exception {
+        String credentials = "{\"username\":\"load@mail.ru\",\"password\":\"password\"}";
+        client.send(HttpRequest.newBuilder(URI.create(base + "/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(base + "/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(credentials))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Integer authorId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = 'load@mail.ru'", Integer.class);
+        List<Object[]> rows = new ArrayList<>(catalogue);
+        for (int i = 1; i <= catalogue; i++) {
+            rows.add(new Object[]{authorId, "Объявление " + i, i, "Описание объявления " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO ads (author_id, title, price, description) VALUES (?, ?, ?, ?)", rows);
+        return OBJECT_MAPPER.readTree(login.body()).get("token").asText();
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e.getMessage();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.skypro.homework.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.Comment;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.CommentEntity;
+import ru.skypro.homework.mapper.AdsMapper;
+import ru.skypro.homework.mapper.AdsMapperImpl;
+import ru.skypro.homework.mapper.CommentMapper;
+import ru.skypro.homework.mapper.CommentMapperImpl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг списков сущностей в DTO через сгенерированные MapStruct мапперы
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private final AdsMapper adsMapper = new AdsMapperImpl();
+
+    private final CommentMapper commentMapper = new CommentMapperImpl();
+
+    private List<AdsEntity> ads;
+
+    private List<CommentEntity> comments;
+
+    @Setup
+    public void setUp() {
+        ads = BenchmarkData.ads(size);
+        comments = BenchmarkData.comments(size);
+    }
+
+    @Benchmark
+    public Collection<Ads> adsEntityToCollectionDto() {
+        return adsMapper.adsEntityToCollectionDto(ads);
+    }
+
+    @Benchmark
+    public List<Comment> commentsEntityToCommentsDtoCollection() {
+        return commentMapper.commentsEntityToCommentsDtoCollection(comments);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.skypro.homework.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.ResponseWrapperAds;
+import ru.skypro.homework.dto.ResponseWrapperComment;
+import ru.skypro.homework.mapper.AdsMapperImpl;
+import ru.skypro.homework.mapper.CommentMapperImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация ответов со списками объявлений и комментариев в JSON.
+ * ObjectMapper настроен так же, как в Spring MVC
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private ResponseWrapperAds<Ads> ads;
+
+    private ResponseWrapperComment comments;
+
+    @Setup
+    public void setUp() {
+        ads = new ResponseWrapperAds<>(new AdsMapperImpl().adsEntityToCollectionDto(BenchmarkData.ads(size)));
+        comments = new ResponseWrapperComment();
+        comments.setResults(new CommentMapperImpl()
+                .commentsEntityToCommentsDtoCollection(BenchmarkData.comments(size)));
+        comments.setCount(size);
+    }
+
+    @Benchmark
+    public byte[] responseWrapperAds() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(ads);
+    }
+
+    @Benchmark
+    public byte[] responseWrapperComment() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(comments);
+    }
+}
@@ -0,0 +1,198 @@
+package ru.skypro.homework.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.spi.ToolProvider;
+import java.util.stream.Stream;
+
+/**
+ * Время от запуска JVM до первого успешного запроса (GET /actuator/health) в трех режимах:
+ * обычный запуск, профиль fast-startup и fast-startup с архивом CDS, как в Dockerfile.
+ * <br> Запуск: mvn -Pbenchmark -DskipTests package exec:exec@startup-test
+ * <br> Параметры: -Dstartup.runs (5 запусков на режим), остальные аргументы вида name=value передаются приложению.
+ * Приложение запускается отдельным процессом из слоев собранного jar на H2 в памяти.
+ * Actuator, как и в обычной конфигурации, слушает отдельный порт на 127.0.0.1, health опрашивается на нем
+ * Результат - медиана и минимум в миллисекундах, пишется в target/startup-result.json
+ */
+public final class StartupBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String MAIN_CLASS = "ru.skypro.homework.HomeworkApplication";
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("startup.runs", 5);
+        Path workDir = Path.of("target", "startup-benchmark");
+        String classpath = prepare(workDir);
+        List<String> properties = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1",
+                "--spring.sql.init.mode=never",
+                "--outbox.sink.type=memory",
+                "--image.storage.type=db",
+                "--auth.token.secret=" + randomSecret(),
+                "--logging.level.root=warn"));
+        Arrays.stream(args).map(arg -> "--" + arg).forEach(properties::add);
+
+        Path archive = workDir.resolve("app.jsa");
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        modes.put("default", List.of());
+        modes.put("fast-startup", List.of("-Dspring.profiles.active=fast-startup"));
+        modes.put("fast-startup-cds", List.of("-XX:SharedArchiveFile=" + archive, "-Dspring.profiles.active=fast-startup"));
+
+        Files.deleteIfExists(archive);
+        train(workDir, classpath, archive, properties);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+            long[] millis = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                millis[i] = timeToFirstRequest(workDir, classpath, mode.getValue(), properties, mode.getKey() + "-" + i);
+            }
+            Arrays.sort(millis);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("runs", runs);
+            result.put("medianMillis", millis[runs / 2]);
+            result.put("minMillis", millis[0]);
+            System.out.println(mode.getKey() + ": " + result);
+            results.put(mode.getKey(), result);
+        }
+        Path output = Path.of("target", "startup-result.json");
+        OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), results);
+        System.out.println("Результат сохранен в " + output.toAbsolutePath());
+    }
+
+    /**
+     * Разложить собранный jar как в Dockerfile: зависимости и классы приложения отдельными jar в lib
+     *
+     * @return classpath приложения
+     */
+    private static String prepare(Path workDir) throws Exception {
+        Path jar;
+        try (Stream<Path> files = Files.list(Path.of("target"))) {
+            jar = files.filter(file -> file.toString().endsWith(".jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Нет собранного jar в target, нужен mvn package"));
+        }
+        Path layers = workDir.resolve("layers");
+        Path lib = workDir.resolve("lib");
+        Files.createDirectories(lib);
+        Files.createDirectories(workDir.resolve("logs"));
+        exec(workDir.resolve("logs").resolve("extract.log"),
+                List.of(java(), "-Djarmode=layertools", "-jar", jar.toAbsolutePath().toString(),
+                        "extract", "--destination", layers.toAbsolutePath().toString()));
+        try (Stream<Path> dependencies = Files.list(layers.resolve("dependencies").resolve("BOOT-INF").resolve("lib"))) {
+            for (Path dependency : (Iterable<Path>) dependencies::iterator) {
+                Files.copy(dependency, lib.resolve(dependency.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Path application = lib.resolve("application.jar");
+        Files.deleteIfExists(application);
+        ToolProvider jarTool = ToolProvider.findFirst("jar")
+                .orElseThrow(() -> new IllegalStateException("Нужен JDK: нет инструмента jar"));
+        int code = jarTool.run(System.out, System.err, "--create", "--file", application.toString(),
+                "-C", layers.resolve("application").resolve("BOOT-INF").resolve("classes").toString(), ".");
+        if (code != 0) {
+            throw new IllegalStateException("jar завершился с кодом " + code);
+        }
+        return lib.toAbsolutePath() + File.separator + "*";
+    }
+
+    /**
+     * Обучающий запуск для архива CDS: контекст поднимается и закрывается (профиль cds-training)
+     */
+    private static void train(Path workDir, String classpath, Path archive, List<String> properties) throws Exception {
+        List<String> command = new ArrayList<>(List.of(java(),
+                "-XX:ArchiveClassesAtExit=" + archive.toAbsolutePath(),
+                "-Dspring.profiles.active=cds-training,fast-startup",
+                "-cp", classpath, MAIN_CLASS));
+        command.addAll(properties);
+        exec(workDir.resolve("logs").resolve("training.log"), command);
+    }
+
+    private static long timeToFirstRequest(Path workDir, String classpath, List<String> jvmOptions,
+                                           List<String> properties, String name) throws Exception {
+        int port = freePort();
+        int managementPort = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(java());
+        command.addAll(jvmOptions);
+        command.addAll(List.of("-cp", classpath, MAIN_CLASS, "--server.port=" + port, "--management.server.port=" + managementPort));
+        command.addAll(properties);
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + managementPort + "/actuator/health")).build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve("logs").resolve(name + ".log").toFile())
+                .start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(name + ": приложение завершилось с кодом " + process.exitValue());
+                }
+                try {
+                    if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return (System.nanoTime() - start) / 1_000_000;
+                    }
+                } catch (IOException e) {
+                    // порт еще не открыт
+                }
+                Thread.sleep(20);
+            }
+            throw new IllegalStateException(name + ": нет ответа за " + TIMEOUT);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static void exec(Path log, List<String> command) throws Exception {
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Команда завершилась с кодом " + process.exitValue() + ", см. " + log);
+        }
+    }
+
+    private static String randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return Base64.getEncoder().encodeToString(secret);
+    }
+
+    private static String java() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.skypro.homework.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import ru.skypro.homework.service.impl.TokenServiceImpl;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка подписанного токена (пользователь из кеша в памяти) против проверки пароля BCrypt на каждом запросе
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenBenchmark {
+
+    private static final String PASSWORD = "password";
+
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+
+    private TokenServiceImpl tokenService;
+
+    private String token;
+
+    private String encodedPassword;
+
+    @Setup
+    public void setUp() {
+        UserDetails user = User.withUsername("user@mail.ru").password(PASSWORD).roles("USER").build();
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.setActiveProfiles("dev");
+        tokenService = new TokenServiceImpl("", Duration.ofHours(1), environment, new InMemoryUserDetailsManager(user));
+        token = tokenService.createToken(user);
+        encodedPassword = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public Optional<Authentication> verifyToken() {
+        return tokenService.verify(token);
+    }
+
+    @Benchmark
+    public boolean matchPassword() {
+        return passwordEncoder.matches(PASSWORD, encodedPassword);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.skypro.homework;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Кеш объявлений и профилей пользователей в памяти (Caffeine).
+ * <br> Размер и время жизни записей задаются spring.cache.caffeine.spec.
+ * Сброс записей откладывается до коммита транзакции, чтобы параллельное чтение
+ * не вернуло в кеш старые данные
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /**
+     * FullAds по id объявления
+     */
+    public static final String ADS_CACHE = "ads";
+
+    /**
+     * User по логину пользователя
+     */
+    public static final String USERS_CACHE = "users";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${spring.cache.caffeine.spec:maximumSize=10000,expireAfterWrite=10m,recordStats}") String spec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(ADS_CACHE, USERS_CACHE);
+        cacheManager.setCacheSpecification(spec);
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.skypro.homework;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Чтение своих изменений при чтении из реплики ({@link ReplicaRoutingDataSource}).
+ * <br> Запрос, который может писать (не GET, HEAD или OPTIONS), читает из основной базы и выставляет cookie
+ * со сроком "сейчас + max-lag"; запросы клиента с этой cookie до конца срока тоже читают из основной базы.
+ * Отметка хранится у клиента, поэтому работает на любом экземпляре за балансировщиком без липких сессий.
+ * Клиент без cookie видит свои изменения с задержкой до max-lag
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "primary-reads-until";
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final Duration maxLag;
+
+    public ReadYourWritesFilter(Duration maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            // до обработки запроса: после нее ответ может быть уже отправлен
+            Cookie cookie = new Cookie(COOKIE, String.valueOf(now + maxLag.toMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(maxLag.toSeconds() + 1, 1));
+            response.addCookie(cookie);
+        }
+        if (!write && !recentWriter(request, now)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        ReplicaRoutingDataSource.setPrimaryReads(true);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.setPrimaryReads(false);
+        }
+    }
+
+    /**
+     * Срок из cookie еще не прошел; срок дальше max-lag от текущего времени не принимается
+     */
+    private boolean recentWriter(HttpServletRequest request, long now) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    long until = Long.parseLong(cookie.getValue());
+                    return until > now && until <= now + maxLag.toMillis();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.skypro.homework;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Выбор базы для соединения: транзакции только для чтения идут в реплику, остальные - в основную базу.
+ * <br> Отставание реплики измеряется запросом к ней раз в lag-check-interval ({@link #checkLag()}).
+ * Если реплика отстала больше max-lag, запрос не удался или давно не выполнялся, чтение идет в основную базу:
+ * ответ с реплики не старше max-lag. Клиент, который недавно писал, читает из основной базы
+ * ({@link ReadYourWritesFilter}), пока не пройдет max-lag: так он сразу видит свои изменения.
+ * Решение принимается при первом запросе к базе, поэтому источник нужно оборачивать
+ * в {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    /**
+     * Отставание реплики PostgreSQL в секундах; если реплика проиграла все полученные изменения - 0,
+     * иначе время с последней проигранной транзакции
+     */
+    public static final String POSTGRESQL_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() " +
+            "THEN 0 ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+    enum Route {PRIMARY, REPLICA}
+
+    /**
+     * Чтение текущего потока идет в основную базу, см. {@link ReadYourWritesFilter}
+     */
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    private final DataSource replica;
+
+    private final Duration maxLag;
+
+    private final String lagQuery;
+
+    /**
+     * До этого момента ({@link System#nanoTime()}) данные реплики не старше max-lag
+     */
+    private volatile long replicaFreshUntil = System.nanoTime();
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag, String lagQuery) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        this.replica = replica;
+        this.maxLag = maxLag;
+        this.lagQuery = lagQuery;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || PRIMARY_READS.get() != null
+                || replicaFreshUntil - System.nanoTime() <= 0) {
+            return Route.PRIMARY;
+        }
+        return Route.REPLICA;
+    }
+
+    /**
+     * Измерить отставание реплики. При отставании lag реплика считается свежей еще max-lag - lag:
+     * к тому времени ее данные станут старше max-lag, если она перестанет проигрывать изменения
+     */
+    @Scheduled(fixedDelayString = "${spring.datasource.replica.lag-check-interval:1000}")
+    public void checkLag() {
+        long checkedAt = System.nanoTime();
+        Duration lag;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            resultSet.next();
+            lag = Duration.ofMillis(Math.round(resultSet.getDouble(1) * 1000)); // NULL - 0, реплика ничего не ждет
+        } catch (SQLException e) {
+            replicaFreshUntil = checkedAt;
+            log.warn("Не удалось измерить отставание реплики, чтение идет в основную базу", e);
+            return;
+        }
+        if (lag.compareTo(maxLag) >= 0) {
+            log.warn("Реплика отстает на {}, больше {}: чтение идет в основную базу", lag, maxLag);
+        }
+        replicaFreshUntil = checkedAt + Math.max(maxLag.minus(lag).toNanos(), 0);
+    }
+
+    static void setPrimaryReads(boolean primaryReads) {
+        if (primaryReads) {
+            PRIMARY_READS.set(Boolean.TRUE);
+        } else {
+            PRIMARY_READS.remove();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.skypro.homework;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * Настройки быстрого запуска (профиль fast-startup и сборка архива CDS в Dockerfile).
+ * <br> startup.lazy-packages - бины из этих пакетов создаются при первом обращении, а не при запуске
+ * (например, springdoc: документация нужна только при открытии swagger-ui).
+ * <br> startup.exit-on-started=true - приложение закрывается сразу после запуска контекста;
+ * так делается обучающий запуск, после которого JVM записывает загруженные классы в архив CDS
+ */
+@Slf4j
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "startup.lazy-packages")
+    public static BeanFactoryPostProcessor lazyPackagesPostProcessor(Environment environment) {
+        List<String> packages = Binder.get(environment)
+                .bind("startup.lazy-packages", Bindable.listOf(String.class))
+                .orElse(List.of());
+        return beanFactory -> {
+            int lazy = 0;
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                String className = declaringClassName(definition);
+                if (className != null && packages.stream().anyMatch(className::startsWith)) {
+                    definition.setLazyInit(true);
+                    lazy++;
+                }
+            }
+            log.debug("Отложено создание {} бинов из {}", lazy, packages);
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "startup.exit-on-started", havingValue = "true")
+    public ApplicationListener<ApplicationStartedEvent> exitOnStartedListener() {
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+
+    /**
+     * Класс бина, а для бина из метода @Bean - класс конфигурации с этим методом
+     */
+    private static String declaringClassName(BeanDefinition definition) {
+        if (definition instanceof AnnotatedBeanDefinition
+                && ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata() != null) {
+            return ((AnnotatedBeanDefinition) definition).getFactoryMethodMetadata().getDeclaringClassName();
+        }
+        return definition.getBeanClassName();
+    }
+}
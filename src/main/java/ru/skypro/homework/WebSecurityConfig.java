@@ -4,13 +4,14 @@ import static org.springframework.security.config.Customizer.withDefaults;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import ru.skypro.homework.controller.BearerTokenFilter;
+import ru.skypro.homework.service.TokenService;
 
 @Configuration
 public class WebSecurityConfig {
@@ -25,19 +26,7 @@ public class WebSecurityConfig {
   };
 
   @Bean
-  public InMemoryUserDetailsManager userDetailsService() {
-    UserDetails user =
-        User.builder()
-            .username("user@gmail.com")
-            .password("password")
-            .passwordEncoder((plainText) -> passwordEncoder().encode(plainText))
-            .roles("USER")
-            .build();
-    return new InMemoryUserDetailsManager(user);
-  }
-
-  @Bean
-  public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+  public SecurityFilterChain filterChain(HttpSecurity http, TokenService tokenService) throws Exception {
     http.csrf()
         .disable()
         .authorizeHttpRequests(
@@ -45,11 +34,18 @@ public class WebSecurityConfig {
                 authorization
                     .mvcMatchers(AUTH_WHITELIST)
                     .permitAll()
-                    .mvcMatchers("/ads/**", "/users/**")
+                    .mvcMatchers(HttpMethod.GET, "/ads/*/image", "/users/*/image")
+                    .permitAll()
+                    .mvcMatchers("/actuator/health", "/actuator/prometheus")
+                    .permitAll()
+                    .mvcMatchers("/actuator/**")
+                    .authenticated()
+                    .mvcMatchers("/ads/**", "/users/**", "/events/**")
                     .authenticated())
         .cors()
         .and()
-        .httpBasic(withDefaults());
+        .httpBasic(withDefaults())
+        .addFilterBefore(new BearerTokenFilter(tokenService), BasicAuthenticationFilter.class);
     return http.build();
   }
 
@@ -6,18 +6,30 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springdoc.api.annotations.ParameterObject;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.skypro.homework.dto.*;
+import ru.skypro.homework.service.AdsBulkService;
 import ru.skypro.homework.service.AdsService;
+import ru.skypro.homework.service.impl.AdsViewCounter;
+import ru.skypro.homework.service.impl.CollectionVersions;
+import ru.skypro.homework.service.impl.PopularAdsTracker;
+import ru.skypro.homework.service.impl.ImageUploadExecutor;
 import ru.skypro.homework.service.UserService;
 
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 import java.util.Collection;
 import java.util.List;
 
@@ -40,10 +52,52 @@ public class AdsController {
     private final AdsService adsService;
 
     /**
-     * Функция получения всех объявлений, хранящихся в базе данных
+     * Поле сервиса массового импорта и экспорта объявлений
+     */
+    private final AdsBulkService adsBulkService;
+
+    /**
+     * Пул, в котором сохраняются загруженные картинки
+     */
+    private final ImageUploadExecutor imageUploadExecutor;
+
+    /**
+     * Поле сервиса пользователей, id пользователя для ETag его объявлений
+     */
+    private final UserService userService;
+
+    /**
+     * Версии списков для ETag
+     */
+    private final CollectionVersions collectionVersions;
+
+    /**
+     * Счетчики просмотров объявлений
+     */
+    private final AdsViewCounter adsViewCounter;
+
+    /**
+     * Популярные объявления
+     */
+    private final PopularAdsTracker popularAdsTracker;
+
+    /**
+     * Списки можно хранить только в кеше браузера и нужно перепроверять по ETag
+     */
+    static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    /**
+     * Тип содержимого NDJSON: по JSON-объекту в строке
+     */
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * Функция получения страницы объявлений, хранящихся в базе данных
      *
-     * @param title заголовок объявления
-     * @return возвращает все объявления
+     * @param filter фильтры по заголовку, цене и автору и порядок ленты
+     * @param cursor курсор страницы из поля nextCursor предыдущего ответа
+     * @param size   размер страницы
+     * @return возвращает страницу объявлений
      */
     @Operation(
             summary = "Получение списка всех объявлений",
@@ -60,9 +114,44 @@ public class AdsController {
 
     )
     @GetMapping(path = "/all")  //GET http://localhost:8080/abs/all
-    public ResponseEntity<ResponseWrapperAds<Ads>> getAllAds(@RequestParam(required = false) String title) {
-        ResponseWrapperAds<Ads> ads = new ResponseWrapperAds<>(adsService.getAllAds(title));
-        return ResponseEntity.ok(ads);
+    public ResponseEntity<ResponseWrapperAds<Ads>> getAllAds(@ParameterObject AdsFilter filter,
+                                                             @RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer size,
+                                                             WebRequest request) {
+        String etag = collectionVersions.adsETag();
+        if (request.checkNotModified(etag)) { // проверка до запроса к базе, ETag уже выставлен в ответ
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(REVALIDATE)
+                .body(adsService.getAllAds(filter, cursor, size));
+    }
+
+    /**
+     * Популярные объявления за последние сутки
+     *
+     * @param by    по просмотрам или по новым комментариям
+     * @param limit сколько объявлений вернуть
+     * @return объявления по убыванию популярности
+     */
+    @Operation(
+            summary = "Популярные объявления за последние сутки",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "ОК",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = ResponseWrapperAds.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping("/popular") //GET http://localhost:8080/ads/popular
+    public ResponseEntity<ResponseWrapperAds<Ads>> getPopularAds(@RequestParam(defaultValue = "VIEWS") PopularBy by,
+                                                                 @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(new ResponseWrapperAds<>(popularAdsTracker.getPopular(by, limit)));
     }
 
     /**
@@ -94,10 +183,10 @@ public class AdsController {
             }
     )
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE) //POST http://localhost:8080/abs
-    public ResponseEntity<Ads> createAds(@RequestPart("properties") @NotNull CreateAds createAds,
-                                         @RequestPart MultipartFile image,
-                                         @NonNull Authentication authentication) {
-        return ResponseEntity.ok(adsService.createAds(createAds, image, authentication));
+    public CompletableFuture<ResponseEntity<Ads>> createAds(@RequestPart("properties") @NotNull CreateAds createAds,
+                                                            @RequestPart MultipartFile image,
+                                                            @NonNull Authentication authentication) {
+        return imageUploadExecutor.submit(() -> ResponseEntity.ok(adsService.createAds(createAds, image, authentication)));
     }
 
     /**
@@ -136,7 +225,7 @@ public class AdsController {
     )
     @GetMapping("/{id}") //GET http://localhost:8080/abs/{id}
     public ResponseEntity<FullAds> getAds(@PathVariable Integer id) {
-        return ResponseEntity.ok(adsService.getAds(id));
+        return ResponseEntity.ok(adsViewCounter.viewed(adsService.getAds(id)));
     }
 
     /**
@@ -254,9 +343,16 @@ public class AdsController {
             }
     )
     @GetMapping("/me") //GET http://localhost:8080/abs/me
-    public ResponseEntity<ResponseWrapperAds<Ads>> getAdsMe(Authentication authentication) {
+    public ResponseEntity<ResponseWrapperAds<Ads>> getAdsMe(Authentication authentication, WebRequest request) {
+        String etag = collectionVersions.adsMeETag(userService.getUser(authentication).getId());
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(REVALIDATE).build();
+        }
         ResponseWrapperAds<Ads> ads = new ResponseWrapperAds<>(adsService.getAdsMe(authentication));
-        return ResponseEntity.ok(ads);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(REVALIDATE)
+                .body(ads);
     }
 
     /**
@@ -303,9 +399,77 @@ public class AdsController {
     )
     @PatchMapping(value = "/{id}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     //PATCH http://localhost:8080/abs/{id}/image
-    public ResponseEntity<String> updateImage(@PathVariable int id,
-                                              @RequestPart MultipartFile image) {
+    public CompletableFuture<ResponseEntity<String>> updateImage(@PathVariable int id,
+                                                                 @RequestPart MultipartFile image) {
+
+        return imageUploadExecutor.submit(() -> ResponseEntity.ok(adsService.updateImage(id, image)));
+    }
 
-        return ResponseEntity.ok(adsService.updateImage(id, image));
+    /**
+     * Функция массового импорта объявлений авторизованного пользователя
+     *
+     * @param ndjson         объявления {@link BulkAds}, по одному в строке
+     * @param authentication авторизованный пользователь
+     * @return количество добавленных объявлений
+     */
+    @Operation(
+            summary = "Массовый импорт объявлений в формате NDJSON",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Количество добавленных объявлений",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Integer.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Слишком много строк, отрицательная цена или чужая картинка; ничего не добавлено"
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Неавторизованный пользователь",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Integer.class))
+                    )
+            }
+    )
+    @PostMapping(value = "/import", consumes = APPLICATION_NDJSON_VALUE) //POST http://localhost:8080/ads/import
+    public ResponseEntity<Integer> importAds(InputStream ndjson, Authentication authentication) throws IOException {
+        return ResponseEntity.ok(adsBulkService.importAds(ndjson, authentication));
+    }
+
+    /**
+     * Функция массового экспорта всех объявлений
+     *
+     * @return поток объявлений {@link BulkAds}, по одному в строке
+     */
+    @Operation(
+            summary = "Массовый экспорт объявлений в формате NDJSON",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "ОК",
+                            content = @Content(
+                                    mediaType = APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = BulkAds.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Неавторизованный пользователь",
+                            content = @Content(
+                                    mediaType = APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = BulkAds.class))
+                    )
+            }
+    )
+    @GetMapping(value = "/export", produces = APPLICATION_NDJSON_VALUE) //GET http://localhost:8080/ads/export
+    public ResponseEntity<StreamingResponseBody> exportAds() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(adsBulkService::exportAds);
     }
 }
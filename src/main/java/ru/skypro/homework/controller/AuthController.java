@@ -9,9 +9,11 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import ru.skypro.homework.dto.LoginReq;
+import ru.skypro.homework.dto.LoginResp;
 import ru.skypro.homework.dto.RegisterReq;
 import ru.skypro.homework.dto.Role;
 import ru.skypro.homework.service.AuthService;
+import ru.skypro.homework.service.TokenService;
 
 import static ru.skypro.homework.dto.Role.USER;
 
@@ -23,13 +25,13 @@ public class AuthController {
 
     private final AuthService authService;
 
+    private final TokenService tokenService;
+
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginReq req) {
-        if (authService.login(req.getUsername(), req.getPassword())) {
-            return ResponseEntity.ok().build();
-        } else {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        }
+        return authService.login(req.getUsername(), req.getPassword())
+                .<ResponseEntity<?>>map(token -> ResponseEntity.ok(new LoginResp(token, tokenService.getTtl().getSeconds())))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.FORBIDDEN).build());
     }
 
     @PostMapping("/register")
@@ -0,0 +1,50 @@
+package ru.skypro.homework.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.skypro.homework.service.TokenService;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Аутентификация по заголовку Authorization: Bearer с токеном из /login.
+ * <br> С неверным или просроченным токеном запрос идет дальше без аутентификации:
+ * открытые пути (например, GET картинок) отвечают как обычно, а закрытые получают 401 от точки входа Spring Security.
+ * <br> Подключается в цепочку Spring Security в {@link ru.skypro.homework.WebSecurityConfig}
+ */
+public class BearerTokenFilter extends OncePerRequestFilter {
+
+    private static final String PREFIX = "Bearer ";
+
+    private final TokenService tokenService;
+
+    public BearerTokenFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.startsWith(PREFIX)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        Optional<Authentication> authentication = tokenService.verify(header.substring(PREFIX.length()).trim());
+        if (authentication.isEmpty()) {
+            SecurityContextHolder.clearContext();
+        } else {
+            SecurityContextHolder.getContext().setAuthentication(authentication.get());
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -12,10 +12,14 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.skypro.homework.dto.Comment;
 import ru.skypro.homework.dto.CreateComment;
 import ru.skypro.homework.dto.ResponseWrapperComment;
 import ru.skypro.homework.service.CommentService;
+import ru.skypro.homework.service.impl.CollectionVersions;
+import ru.skypro.homework.service.impl.CommentStreamHub;
 
 
 /**
@@ -34,11 +38,23 @@ public class CommentController {
 
     private final CommentService commentService;
 
+    /**
+     * Версии списков для ETag
+     */
+    private final CollectionVersions collectionVersions;
+
+    /**
+     * Подписчики на изменения комментариев
+     */
+    private final CommentStreamHub commentStreamHub;
+
     /**
      * Получить комментарии объявления
      *
-     * @param id идентификатор объявления, не может быть null
-     * @return комментарии
+     * @param id     идентификатор объявления, не может быть null
+     * @param cursor курсор следующей страницы из nextCursor предыдущего ответа
+     * @param size   размер страницы
+     * @return страница комментариев, новые первыми
      */
     @Operation(
             summary = "Получить комментарии объявления",
@@ -51,6 +67,10 @@ public class CommentController {
                                     schema = @Schema(implementation = Integer.class)
                             )
                     ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Объявление не найдено или удалено"
+                    ),
                     @ApiResponse(
                             responseCode = "401",
                             description = "Unauthorized",
@@ -61,8 +81,53 @@ public class CommentController {
             }
     )
     @GetMapping("{id}/comments")
-    public ResponseEntity<ResponseWrapperComment> getComments(@PathVariable int id) {
-        return ResponseEntity.ok(commentService.getComments(id));
+    public ResponseEntity<ResponseWrapperComment> getComments(@PathVariable int id,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(required = false) Integer size,
+                                                              WebRequest request) {
+        String etag = collectionVersions.commentsETag(id);
+        if (request.checkNotModified(etag)) { // проверка до запроса к базе, ETag уже выставлен в ответ
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(AdsController.REVALIDATE).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(AdsController.REVALIDATE)
+                .body(commentService.getComments(id, cursor, size));
+    }
+
+    /**
+     * Подписаться на новые, измененные и удаленные комментарии объявления
+     *
+     * @param id             идентификатор объявления, не может быть null
+     * @param authentication авторизованный пользователь
+     * @return поток Server-Sent Events: событие COMMENT_CREATED, COMMENT_UPDATED или COMMENT_DELETED,
+     * id события - id комментария, данные - комментарий в JSON
+     */
+    @Operation(
+            summary = "Поток изменений комментариев объявления",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "ОК",
+                            content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Unauthorized"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Объявление не найдено"
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "У пользователя открыто слишком много потоков"
+                    )
+            }
+    )
+    @GetMapping(path = "{id}/comments/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamComments(@PathVariable int id, Authentication authentication) {
+        return commentStreamHub.subscribe(id, authentication.getName());
     }
 
     /**
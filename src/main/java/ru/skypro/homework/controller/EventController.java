@@ -0,0 +1,59 @@
+package ru.skypro.homework.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.skypro.homework.dto.DomainEvent;
+import ru.skypro.homework.service.OutboxService;
+
+import java.util.List;
+
+/**
+ * EventController
+ * Поток событий об изменении объявлений и комментариев для внешних потребителей
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("events")
+public class EventController {
+
+    private final OutboxService outboxService;
+
+    /**
+     * Опубликованные события после позиции
+     *
+     * @param after позиция последнего обработанного события, 0 - с начала
+     * @param limit количество событий
+     * @return события по возрастанию позиции, пустой список - новых событий нет
+     */
+    @Operation(
+            summary = "Получить события после позиции",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "ОК",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = DomainEvent.class))
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "401",
+                            description = "Unauthorized"
+                    )
+            }
+    )
+    @GetMapping
+    public List<DomainEvent> getEvents(@RequestParam(defaultValue = "0") long after,
+                                       @RequestParam(required = false) Integer limit) {
+        return outboxService.getEvents(after, limit);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.skypro.homework.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.service.ImageService;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Контроллер ImageController
+ * Контроллер для отдачи картинок объявлений и аватаров пользователей
+ * <br> Картинка отдается потоком из хранилища: ETag - хеш содержимого, поддерживаются If-None-Match и Range.
+ * Ссылки из маппингов содержат версию картинки (?v=id), такие ответы кешируются клиентом навсегда.
+ * Параметр w выбирает уменьшенную копию, см. {@link ru.skypro.homework.service.impl.ImageVariantGenerator}
+ */
+@Slf4j
+@CrossOrigin(value = "http://localhost:3000")
+@RestController
+@RequiredArgsConstructor
+public class ImageController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE_CACHE =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+
+    private final ImageService imageService;
+
+    /**
+     * Получить картинку объявления
+     *
+     * @param id идентификатор объявления, не может быть null
+     * @param v  версия картинки из ссылки
+     * @param w  желаемая ширина, отдается ближайшая уменьшенная копия не уже w
+     * @return содержимое картинки
+     */
+    @Operation(
+            summary = "Получить картинку объявления",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "ОК"),
+                    @ApiResponse(responseCode = "206", description = "Часть картинки"),
+                    @ApiResponse(responseCode = "304", description = "Картинка не изменилась"),
+                    @ApiResponse(responseCode = "404", description = "Картинка не найдена")
+            }
+    )
+    @GetMapping("/ads/{id}/image")
+    public ResponseEntity<Resource> getAdsImage(@PathVariable Integer id,
+                                                @RequestParam(required = false) Integer v,
+                                                @RequestParam(required = false) Integer w,
+                                                ServletWebRequest request) throws IOException {
+        return image(imageService.getAdsImage(id), v, w, request);
+    }
+
+    /**
+     * Получить аватар пользователя
+     *
+     * @param id идентификатор пользователя, не может быть null
+     * @param v  версия картинки из ссылки
+     * @param w  желаемая ширина, отдается ближайшая уменьшенная копия не уже w
+     * @return содержимое картинки
+     */
+    @Operation(
+            summary = "Получить аватар пользователя",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "ОК"),
+                    @ApiResponse(responseCode = "206", description = "Часть картинки"),
+                    @ApiResponse(responseCode = "304", description = "Картинка не изменилась"),
+                    @ApiResponse(responseCode = "404", description = "Картинка не найдена")
+            }
+    )
+    @GetMapping("/users/{id}/image")
+    public ResponseEntity<Resource> getUserImage(@PathVariable Integer id,
+                                                 @RequestParam(required = false) Integer v,
+                                                 @RequestParam(required = false) Integer w,
+                                                 ServletWebRequest request) throws IOException {
+        return image(imageService.getUserImage(id), v, w, request);
+    }
+
+    /**
+     * Ответ с картинкой.
+     * <br> Картинка читается из базы без содержимого: ETag - хеш, и 304 отвечается без чтения картинки.
+     * Файл целиком отдается через sendfile Tomcat, минуя JVM, запросы с Range к файлу пишутся конвертером
+     * Spring кусками. Картинка из БД читается в память целиком, только для ответа с телом
+     */
+    private ResponseEntity<Resource> image(ImageEntity original, Integer version, Integer width,
+                                           ServletWebRequest request) throws IOException {
+        ImageEntity image = imageService.getVariant(original, width);
+        // пока копия не построена, по ссылке с шириной отдается оригинал - его нельзя кешировать навсегда
+        boolean immutable = original.getId().equals(version) && (width == null || image != original);
+        String etag = "\"" + image.getHash() + "\"";
+        String cacheControl = immutable ? IMMUTABLE_CACHE : CacheControl.noCache().getHeaderValue();
+        if (request.checkNotModified(etag)) { // ETag уже выставлен в ответ
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .contentType(image.getMediaType() == null
+                        ? MediaType.APPLICATION_OCTET_STREAM
+                        : MediaType.parseMediaType(image.getMediaType()));
+
+        Resource content = imageService.getImageContent(image);
+        if (content.isFile() && request.getHeader(HttpHeaders.RANGE) == null
+                && Boolean.TRUE.equals(request.getRequest().getAttribute(SENDFILE_SUPPORT))) {
+            File file = content.getFile();
+            request.getRequest().setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            request.getRequest().setAttribute(SENDFILE_START, 0L);
+            request.getRequest().setAttribute(SENDFILE_END, file.length());
+            return response.contentLength(file.length()).build();
+        }
+        return response.body(content);
+    }
+}
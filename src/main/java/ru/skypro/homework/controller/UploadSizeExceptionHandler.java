@@ -0,0 +1,23 @@
+package ru.skypro.homework.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Ответ 413 на запрос, который Tomcat отклонил при разборе multipart по пределам
+ * spring.servlet.multipart.max-file-size и max-request-size, как и на {@link ru.skypro.homework.exception.ImageTooLargeException}.
+ * <br> Без обработчика Spring отвечает на такой запрос 500
+ */
+@RestControllerAdvice
+public class UploadSizeExceptionHandler {
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public void handleMaxUploadSize(MaxUploadSizeExceededException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), "Картинка больше допустимого размера");
+    }
+}
@@ -14,8 +14,9 @@ import org.springframework.web.multipart.MultipartFile;
 import ru.skypro.homework.dto.NewPassword;
 import ru.skypro.homework.dto.User;
 import ru.skypro.homework.service.UserService;
+import ru.skypro.homework.service.impl.ImageUploadExecutor;
 
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Контроллер UserController
@@ -36,6 +37,11 @@ public class UserController {
      */
     private final UserService userService;
 
+    /**
+     * Пул, в котором сохраняются загруженные картинки
+     */
+    private final ImageUploadExecutor imageUploadExecutor;
+
     /**
      * Обновление пароля
      *
@@ -167,8 +173,10 @@ public class UserController {
             }
     )
     @PatchMapping(value = "/me/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> updateUserImage(@RequestPart MultipartFile image, Authentication authentication) throws IOException {
-        userService.updateUserImage(image, authentication);
-        return ResponseEntity.ok().build();
+    public CompletableFuture<ResponseEntity<?>> updateUserImage(@RequestPart MultipartFile image, Authentication authentication) {
+        return imageUploadExecutor.submit(() -> {
+            userService.updateUserImage(image, authentication);
+            return ResponseEntity.ok().build();
+        });
     }
 }
@@ -1,11 +1,14 @@
 package ru.skypro.homework.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 /**
  * Объявление
  */
 @Data
+@NoArgsConstructor
 public class Ads {
 
     /**
@@ -32,4 +35,24 @@ public class Ads {
      * Заголовок объявления
      */
     private String title;
+
+    /**
+     * Количество комментариев к объявлению
+     */
+    private int commentCount;
+
+    /**
+     * Количество просмотров, заполняется только в объявлениях автора (GET /ads/me)
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long views;
+
+    public Ads(int author, String image, int pk, int price, String title, int commentCount) {
+        this.author = author;
+        this.image = image;
+        this.pk = pk;
+        this.price = price;
+        this.title = title;
+        this.commentCount = commentCount;
+    }
 }
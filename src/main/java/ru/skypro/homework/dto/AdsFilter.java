@@ -0,0 +1,42 @@
+package ru.skypro.homework.dto;
+
+import lombok.Data;
+
+/**
+ * Фильтры и порядок ленты объявлений, все поля необязательные
+ */
+@Data
+public class AdsFilter {
+
+    /**
+     * Подстрока заголовка
+     */
+    private String title;
+
+    /**
+     * Минимальная цена, включительно
+     */
+    private Integer minPrice;
+
+    /**
+     * Максимальная цена, включительно
+     */
+    private Integer maxPrice;
+
+    /**
+     * Идентификатор автора
+     */
+    private Integer author;
+
+    /**
+     * Порядок ленты, null - по умолчанию
+     */
+    private AdsSort sort;
+
+    /**
+     * Заданы ли фильтры, кроме заголовка
+     */
+    public boolean hasFilters() {
+        return minPrice != null || maxPrice != null || author != null;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.skypro.homework.dto;
+
+/**
+ * Порядок ленты объявлений
+ */
+public enum AdsSort {
+    /**
+     * Сначала старые (по возрастанию id), порядок по умолчанию
+     */
+    OLDEST,
+    /**
+     * Сначала новые
+     */
+    NEWEST,
+    /**
+     * Сначала дешевые
+     */
+    PRICE_ASC,
+    /**
+     * Сначала дорогие
+     */
+    PRICE_DESC
+}
@@ -0,0 +1,42 @@
+package ru.skypro.homework.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * Строка массового импорта и экспорта объявлений (NDJSON)
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkAds {
+
+    /**
+     * id объявления, только при экспорте
+     */
+    private Integer pk;
+
+    /**
+     * id автора объявления, только при экспорте
+     */
+    private Integer author;
+
+    /**
+     * Заголовок объявления
+     */
+    private String title;
+
+    /**
+     * Цена товара в объявлении
+     */
+    private int price;
+
+    /**
+     * Описание объявления
+     */
+    private String description;
+
+    /**
+     * id уже загруженной картинки объявления, может быть null
+     */
+    private Integer image;
+}
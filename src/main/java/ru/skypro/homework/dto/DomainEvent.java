@@ -0,0 +1,35 @@
+package ru.skypro.homework.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.Data;
+
+/**
+ * Событие об изменении объявления или его комментариев
+ */
+@Data
+public class DomainEvent {
+
+    /**
+     * Позиция события в потоке, без пропусков и по возрастанию.
+     * Потребитель продолжает чтение с последней обработанной позиции
+     */
+    private long position;
+
+    private DomainEventType type;
+
+    /**
+     * id объявления, null - для событий не об одном объявлении
+     */
+    private Integer adsId;
+
+    /**
+     * Данные события в JSON: {@link Ads} для объявления, {@link Comment} для комментария
+     */
+    @JsonRawValue
+    private String payload;
+
+    /**
+     * Дата и время события в миллисекундах с 00:00:00 01.01.1970
+     */
+    private Long createdAt;
+}
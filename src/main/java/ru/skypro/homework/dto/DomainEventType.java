@@ -0,0 +1,18 @@
+package ru.skypro.homework.dto;
+
+/**
+ * Тип события об изменении объявлений и комментариев
+ */
+public enum DomainEventType {
+    ADS_CREATED,
+    ADS_UPDATED,
+    ADS_IMAGE_UPDATED,
+    ADS_DELETED,
+    /**
+     * Массовый импорт, в событии количество добавленных объявлений
+     */
+    ADS_IMPORTED,
+    COMMENT_CREATED,
+    COMMENT_UPDATED,
+    COMMENT_DELETED
+}
@@ -52,4 +52,14 @@ public class FullAds {
      * Заголовок объявления
      */
     private String title;
+
+    /**
+     * Количество комментариев к объявлению
+     */
+    private int commentCount;
+
+    /**
+     * Количество просмотров объявления
+     */
+    private long views;
 }
@@ -0,0 +1,24 @@
+package ru.skypro.homework.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ответ на успешный вход
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoginResp {
+
+    /**
+     * Токен для заголовка Authorization: Bearer
+     */
+    private String token;
+
+    /**
+     * Время жизни токена в секундах
+     */
+    private long expiresIn;
+}
@@ -0,0 +1,15 @@
+package ru.skypro.homework.dto;
+
+/**
+ * По чему считаются популярные объявления
+ */
+public enum PopularBy {
+    /**
+     * Больше всего просмотров за окно, порядок по умолчанию
+     */
+    VIEWS,
+    /**
+     * Больше всего новых комментариев за окно
+     */
+    COMMENTS
+}
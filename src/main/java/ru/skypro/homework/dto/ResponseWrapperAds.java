@@ -9,8 +9,18 @@ public class ResponseWrapperAds<T> {
     private int count;
     private final Collection<T> results;
 
+    /**
+     * Курсор следующей страницы, null - если страница последняя
+     */
+    private String nextCursor;
+
     public ResponseWrapperAds(Collection<T> results) {
         this.count = results.size();
         this.results = results;
     }
+
+    public ResponseWrapperAds(Collection<T> results, String nextCursor) {
+        this(results);
+        this.nextCursor = nextCursor;
+    }
 }
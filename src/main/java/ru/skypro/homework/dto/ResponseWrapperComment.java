@@ -9,4 +9,9 @@ public class ResponseWrapperComment {
     private int count;
     private List<Comment> results;
 
+    /**
+     * Курсор следующей страницы, null - если страница последняя
+     */
+    private String nextCursor;
+
 }
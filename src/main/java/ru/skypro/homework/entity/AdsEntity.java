@@ -6,10 +6,18 @@ import javax.persistence.*;
 
 /**
  * Класс AdsEntity, представляет сущность объявления
+ * <br> Индексы покрывают фильтры и порядки ленты ({@link ru.skypro.homework.repository.AdsSpecifications}):
+ * цена с сортировкой по цене, автор с сортировкой по id и автор с ценой.
+ * Индекс по image_id нужен сборщику неиспользуемых картинок
  */
 @Entity
 @Data
-@Table(name = "ads")
+@Table(name = "ads", indexes = {
+        @Index(name = "ads_price_id_idx", columnList = "price, id"),
+        @Index(name = "ads_author_id_idx", columnList = "author_id, id"),
+        @Index(name = "ads_author_price_idx", columnList = "author_id, price, id"),
+        @Index(name = "ads_image_idx", columnList = "image_id")
+})
 public class AdsEntity {
 
     /**
@@ -44,8 +52,41 @@ public class AdsEntity {
     /**
      * Ссылка на картинку объявления
      */
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "image_id")
     private ImageEntity imageEntity;
 
+    /**
+     * Количество комментариев к объявлению.
+     * <br> Меняется только запросом {@link ru.skypro.homework.repository.AdsRepository#addCommentCount(Integer, int)},
+     * поэтому сохранение объявления его не перезаписывает
+     */
+    @Column(name = "comment_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "integer default 0")
+    private int commentCount;
+
+    /**
+     * Версия комментариев объявления для ETag списка комментариев.
+     * <br> Меняется только запросом {@link ru.skypro.homework.repository.AdsRepository#incrementCommentsVersion(Integer)}
+     */
+    @Column(name = "comments_version", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint default 0")
+    private long commentsVersion;
+
+    /**
+     * Объявление удалено и ждет фоновой очистки комментариев и картинки ({@link ru.skypro.homework.service.impl.AdsReaper}).
+     * <br> Меняется только запросом {@link ru.skypro.homework.repository.AdsRepository#markDeleted(Integer)};
+     * значение по умолчанию задает база, поэтому пакетная вставка колонку не передает
+     */
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "boolean default false")
+    private boolean deleted;
+
+    /**
+     * Количество просмотров объявления.
+     * <br> Меняется только пакетной записью {@link ru.skypro.homework.service.impl.AdsViewCounter},
+     * значение по умолчанию задает база
+     */
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "bigint default 0")
+    private long views;
+
 }
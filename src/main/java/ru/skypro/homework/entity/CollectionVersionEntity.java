@@ -0,0 +1,31 @@
+package ru.skypro.homework.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Класс CollectionVersionEntity, версия списка для ETag ({@link ru.skypro.homework.service.impl.CollectionVersions}).
+ * <br> Строка на список, версия увеличивается в транзакции изменения
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "collection_version")
+public class CollectionVersionEntity {
+
+    /**
+     * Название списка
+     */
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private long version;
+}
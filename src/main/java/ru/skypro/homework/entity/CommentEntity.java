@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "comment")
+@Table(name = "comment", indexes = @Index(name = "comment_ad_created_idx", columnList = "ad_id, created_at, id"))
 public class CommentEntity {
     /**
      * Идентификационный номер (id) комментария
@@ -25,14 +25,14 @@ public class CommentEntity {
      * объявление
      */
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "ad_id")
     private AdsEntity ad;
 
     /**
      * автор
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "author_id")
     private UserEntity author;
 
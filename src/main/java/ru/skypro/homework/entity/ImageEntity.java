@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 import static javax.persistence.GenerationType.IDENTITY;
 
@@ -15,7 +16,10 @@ import static javax.persistence.GenerationType.IDENTITY;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "image")
+@Table(name = "image", indexes = {
+        @Index(name = "image_hash_idx", columnList = "hash"),
+        @Index(name = "image_original_idx", columnList = "original_id, width")
+})
 public class ImageEntity {
 
     /**
@@ -31,7 +35,52 @@ public class ImageEntity {
     private String mediaType;
 
     /**
-     * Данные изображения
+     * Данные изображения, заполняются только при хранении в БД
      */
     private byte[] data;
+
+    /**
+     * SHA-256 содержимого изображения в hex, ключ файла в файловом хранилище
+     */
+    @Column(length = 64)
+    private String hash;
+
+    /**
+     * Размер изображения в байтах
+     */
+    private Long fileSize;
+
+    /**
+     * Дата и время загрузки изображения
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * Исходная картинка, если это уменьшенная копия
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "original_id")
+    private ImageEntity original;
+
+    /**
+     * Ширина уменьшенной копии в пикселях, у исходной картинки null
+     */
+    private Integer width;
+
+    /**
+     * Картинка без содержимого для удаления: id, hash и размер
+     */
+    public ImageEntity(Integer id, String hash, Long fileSize) {
+        this.id = id;
+        this.hash = hash;
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * Картинка без содержимого для отдачи: содержимое читает {@link ru.skypro.homework.service.ImageStorage#load}
+     */
+    public ImageEntity(Integer id, String hash, Long fileSize, String mediaType) {
+        this(id, hash, fileSize);
+        this.mediaType = mediaType;
+    }
 }
@@ -0,0 +1,41 @@
+package ru.skypro.homework.entity;
+
+import lombok.Data;
+import ru.skypro.homework.dto.DomainEventType;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Класс OutboxEventEntity, событие в таблице outbox.
+ * <br> Пишется в той же транзакции, что и изменение, позицию в потоке назначает
+ * {@link ru.skypro.homework.service.impl.OutboxRelay} при публикации
+ */
+@Entity
+@Data
+@Table(name = "outbox_event", indexes = @Index(name = "outbox_event_position_idx", columnList = "stream_position", unique = true))
+public class OutboxEventEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DomainEventType type;
+
+    @Column(name = "ads_id")
+    private Integer adsId;
+
+    @Column(columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Позиция в потоке, null - событие еще не опубликовано
+     */
+    @Column(name = "stream_position")
+    private Long position;
+}
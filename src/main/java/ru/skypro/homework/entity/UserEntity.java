@@ -12,7 +12,7 @@ import static javax.persistence.GenerationType.IDENTITY;
  */
 @Entity
 @Data
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "users_image_idx", columnList = "image_id"))
 @NoArgsConstructor
 @AllArgsConstructor
 public class UserEntity {
@@ -58,7 +58,7 @@ public class UserEntity {
     /**
      * Ссылка на изображение пользователя
      */
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "image_id")
     private ImageEntity imageEntity;
 }
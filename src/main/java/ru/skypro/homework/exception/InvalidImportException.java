@@ -0,0 +1,12 @@
+package ru.skypro.homework.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, когда массовый импорт объявлений не прошел проверку; ни одно объявление не добавлено
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidImportException extends IllegalArgumentException {
+    public InvalidImportException(String message) {super(message);}
+}
@@ -0,0 +1,12 @@
+package ru.skypro.homework.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, когда у пользователя уже открыто максимальное число потоков комментариев
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManySubscriptionsException extends RuntimeException {
+    public TooManySubscriptionsException(String message) {super(message);}
+}
@@ -0,0 +1,12 @@
+package ru.skypro.homework.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, когда очередь загрузки картинок переполнена
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class UploadRejectedException extends RuntimeException {
+    public UploadRejectedException(String message) {super(message);}
+}
@@ -13,10 +13,16 @@ import java.util.Collection;
 @Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.IGNORE)
 public interface AdsMapper {
 
+    /**
+     * Ширина картинки в карточке объявления, совпадает с '&w=320' в запросах AdsRepository
+     */
+    int CARD_IMAGE_WIDTH = 320;
+
 
     @Mapping(target = "author", source = "author.id")
     @Mapping(target = "pk", source = "id")
-    @Mapping(target = "image",expression = "java(imageMap(adsEntity))")
+    @Mapping(target = "image",expression = "java(imageMap(adsEntity) + cardImageWidth(adsEntity))")
+    @Mapping(target = "views", ignore = true)
     Ads toAdsDto(AdsEntity adsEntity);
 
     @Mapping(source = "id", target = "pk")
@@ -27,14 +33,27 @@ public interface AdsMapper {
     @Mapping(target = "image", expression = "java(imageMap(adsEntity))")
     FullAds toFullAdsDto(AdsEntity adsEntity);
 
+    /**
+     * Копия объявления, чтобы не менять объект из кеша
+     */
+    FullAds copy(FullAds fullAds);
+
     AdsEntity createAdsDtoToAdsEntity(CreateAds createAdsDTO);
 
     Collection<Ads> adsEntityToCollectionDto(Collection<AdsEntity> adsCollection);
 
     AdsEntity toEntity(CreateAds createAdsDto);
 
+    /**
+     * Ссылка на картинку объявления, id картинки в параметре v меняет ссылку при замене картинки
+     */
     default String imageMap(AdsEntity adsEntity){
-        return "/ads/" + adsEntity.getId() + "/image";
+        String url = "/ads/" + adsEntity.getId() + "/image";
+        return adsEntity.getImageEntity() == null ? url : url + "?v=" + adsEntity.getImageEntity().getId();
+    }
+
+    default String cardImageWidth(AdsEntity adsEntity) {
+        return adsEntity.getImageEntity() == null ? "" : "&w=" + CARD_IMAGE_WIDTH;
     }
 
 }
@@ -0,0 +1,24 @@
+package ru.skypro.homework.mapper;
+
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+import ru.skypro.homework.dto.DomainEvent;
+import ru.skypro.homework.entity.OutboxEventEntity;
+
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public interface OutboxEventMapper {
+
+    @Mapping(target = "createdAt", expression = "java(time(eventEntity))")
+    DomainEvent toDto(OutboxEventEntity eventEntity);
+
+    List<DomainEvent> toDtoList(Collection<OutboxEventEntity> eventEntities);
+
+    default Long time(OutboxEventEntity eventEntity) {
+        return eventEntity.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
@@ -23,6 +23,7 @@ public interface UserMapper {
     UserEntity toEntityFromReq(RegisterReq registerReqDto);
 
     default String imageMap(UserEntity userEntity) {
-        return "/users/"+ userEntity.getId() + "/image";
+        String url = "/users/" + userEntity.getId() + "/image";
+        return userEntity.getImageEntity() == null ? url : url + "?v=" + userEntity.getImageEntity().getId();
     }
 }
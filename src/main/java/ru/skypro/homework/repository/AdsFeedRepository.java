@@ -0,0 +1,23 @@
+package ru.skypro.homework.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.entity.AdsEntity;
+
+import java.util.List;
+
+/**
+ * Выборка ленты объявлений по {@link Specification} с ограничением количества строк.
+ * <br> В отличие от JpaSpecificationExecutor#findAll(Specification, Pageable) не выполняет запрос count
+ * и выбирает только колонки карточки ленты, без загрузки сущностей в контекст персистентности
+ */
+public interface AdsFeedRepository {
+
+    /**
+     * @param spec  условие выборки, может быть null
+     * @param sort  порядок строк
+     * @param limit максимальное количество строк
+     */
+    List<Ads> findFeed(Specification<AdsEntity> spec, Sort sort, int limit);
+}
@@ -0,0 +1,61 @@
+package ru.skypro.homework.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.mapper.AdsMapper;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+/**
+ * Реализация {@link AdsFeedRepository}, подключается к {@link AdsRepository} по имени
+ */
+class AdsFeedRepositoryImpl implements AdsFeedRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Ads> findFeed(Specification<AdsEntity> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Ads> query = cb.createQuery(Ads.class);
+        Root<AdsEntity> root = query.from(AdsEntity.class);
+        query.select(cb.construct(Ads.class,
+                root.get("author").get("id"),
+                imageUrl(root, cb),
+                root.get("id"),
+                root.get("price"),
+                root.get("title"),
+                root.get("commentCount")));
+        Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(toOrders(sort, root, cb));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Ссылка на картинку карточки, как в {@link AdsMapper#imageMap(AdsEntity)} и {@link AdsMapper#cardImageWidth(AdsEntity)}.
+     * <br> id автора и картинки берутся из внешних ключей, join не нужен
+     */
+    private static Expression<String> imageUrl(Root<AdsEntity> root, CriteriaBuilder cb) {
+        Path<Integer> imageId = root.get("imageEntity").get("id");
+        Expression<String> url = cb.concat(cb.concat("/ads/", root.get("id").as(String.class)), "/image");
+        return cb.<String>selectCase()
+                .when(cb.isNull(imageId), url)
+                .otherwise(cb.concat(cb.concat(cb.concat(url, "?v="), imageId.as(String.class)),
+                        "&w=" + AdsMapper.CARD_IMAGE_WIDTH));
+    }
+}
@@ -1,22 +1,116 @@
 package ru.skypro.homework.repository;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.skypro.homework.dto.Ads;
 import ru.skypro.homework.entity.AdsEntity;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Интерфейс AdsRepository
  * для работы с БД (для объявлений)
  */
 @Repository
-public interface AdsRepository extends JpaRepository<AdsEntity, Integer> {
-    @Query(value = "SELECT * FROM ads WHERE title LIKE %title%", nativeQuery = true)
-    List<AdsEntity> findByTitleLikeIgnoreCase(@Param("title") String title);
+public interface AdsRepository extends JpaRepository<AdsEntity, Integer>, AdsFeedRepository {
+    /**
+     * Объявления автора, кроме удаленных
+     */
+    Collection<AdsEntity> findByAuthorIdAndDeletedFalse(int authorId);
 
-    Collection<AdsEntity> findByAuthorId(int authorId);
+    /**
+     * Объявление, если оно не удалено
+     */
+    @Query("SELECT a FROM AdsEntity a WHERE a.id = :id AND a.deleted = false")
+    Optional<AdsEntity> findActiveById(@Param("id") Integer id);
+
+    /**
+     * Есть ли объявление и не удалено ли оно
+     */
+    boolean existsByIdAndDeletedFalse(Integer id);
+
+    /**
+     * Неудаленные объявления по списку id, порядок не сохраняется
+     */
+    @Query("SELECT a FROM AdsEntity a WHERE a.id IN :ids AND a.deleted = false")
+    List<AdsEntity> findActiveByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * id неудаленных объявлений из списка
+     */
+    @Query("SELECT a.id FROM AdsEntity a WHERE a.id IN :ids AND a.deleted = false")
+    List<Integer> findActiveIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Неудаленное объявление вместе с автором одним запросом
+     */
+    @Query("SELECT a FROM AdsEntity a LEFT JOIN FETCH a.author WHERE a.id = :id AND a.deleted = false")
+    Optional<AdsEntity> findWithAuthorById(@Param("id") Integer id);
+
+    /**
+     * Поиск объявлений по подстроке заголовка без учета регистра.
+     * <br> Сначала идут объявления, где подстрока ближе к началу заголовка, затем более короткие заголовки.
+     * На PostgreSQL условие обслуживается триграммным индексом ads_title_trgm_idx (db/title-trigram-index.sql)
+     *
+     * @param title подстрока в нижнем регистре с экранированными символами % и _
+     */
+    @Query("SELECT new ru.skypro.homework.dto.Ads(a.author.id, " +
+            "CASE WHEN a.imageEntity.id IS NULL THEN concat('/ads/', str(a.id), '/image') " +
+            "ELSE concat('/ads/', str(a.id), '/image?v=', str(a.imageEntity.id), '&w=320') END, " +
+            "a.id, a.price, a.title, a.commentCount) " +
+            "FROM AdsEntity a WHERE a.deleted = false AND lower(a.title) LIKE concat('%', :title, '%') ESCAPE '\\' " +
+            "ORDER BY locate(:title, lower(a.title), 1), length(a.title), a.id")
+    Slice<Ads> searchByTitle(@Param("title") String title, Pageable pageable);
+
+    /**
+     * id картинки объявления без загрузки объявления и картинки
+     */
+    @Query("SELECT a.imageEntity.id FROM AdsEntity a WHERE a.id = :id")
+    Integer findImageIdById(@Param("id") Integer id);
+
+    /**
+     * Изменить счетчик комментариев объявления одним UPDATE, без чтения объявления
+     *
+     * @param delta на сколько изменить счетчик
+     * @return количество измененных строк, 0 - если объявления нет или оно удалено
+     */
+    @Modifying
+    @Query("UPDATE AdsEntity a SET a.commentCount = a.commentCount + :delta WHERE a.id = :id AND a.deleted = false")
+    int addCommentCount(@Param("id") Integer id, @Param("delta") int delta);
+
+    /**
+     * Увеличить версию комментариев объявления, см. {@link ru.skypro.homework.service.impl.CollectionVersions}
+     */
+    @Modifying
+    @Query("UPDATE AdsEntity a SET a.commentsVersion = a.commentsVersion + 1 WHERE a.id = :id")
+    int incrementCommentsVersion(@Param("id") Integer id);
+
+    /**
+     * Версия комментариев объявления, null - если объявления нет
+     */
+    @Query("SELECT a.commentsVersion FROM AdsEntity a WHERE a.id = :id")
+    Long findCommentsVersionById(@Param("id") Integer id);
+
+    /**
+     * Пометить объявление удаленным; комментарии и картинку потом удалит {@link ru.skypro.homework.service.impl.AdsReaper}
+     *
+     * @return количество измененных строк, 0 - если объявления нет или оно уже удалено
+     */
+    @Modifying
+    @Query("UPDATE AdsEntity a SET a.deleted = true WHERE a.id = :id AND a.deleted = false")
+    int markDeleted(@Param("id") Integer id);
+
+    /**
+     * id удаленных, но еще не очищенных объявлений после заданного id, по возрастанию.
+     * На PostgreSQL обслуживается частичным индексом ads_deleted_idx (schema-postgresql.sql)
+     */
+    @Query("SELECT a.id FROM AdsEntity a WHERE a.deleted = true AND a.id > :after ORDER BY a.id")
+    List<Integer> findDeletedIdsAfter(@Param("after") int after, Pageable pageable);
 }
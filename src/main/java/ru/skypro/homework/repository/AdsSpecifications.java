@@ -0,0 +1,88 @@
+package ru.skypro.homework.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.skypro.homework.dto.AdsSort;
+import ru.skypro.homework.entity.AdsEntity;
+
+/**
+ * Условия выборки ленты объявлений для {@link AdsFeedRepository}.
+ * <br> Фабрики возвращают null для незаданного значения, такое условие {@link Specification} пропускает.
+ * Под сочетания фильтров и порядков заведены индексы в {@link AdsEntity}
+ */
+public final class AdsSpecifications {
+
+    private AdsSpecifications() {
+    }
+
+    /**
+     * Объявления, не помеченные удаленными
+     */
+    public static Specification<AdsEntity> notDeleted() {
+        return (root, query, cb) -> cb.isFalse(root.get("deleted"));
+    }
+
+    /**
+     * Подстрока заголовка без учета регистра
+     *
+     * @param pattern подстрока в нижнем регистре с экранированными символами % и _
+     */
+    public static Specification<AdsEntity> titleContains(String pattern) {
+        return pattern == null ? null
+                : (root, query, cb) -> cb.like(cb.lower(root.get("title")), "%" + pattern + "%", '\\');
+    }
+
+    public static Specification<AdsEntity> priceFrom(Integer minPrice) {
+        return minPrice == null ? null : (root, query, cb) -> cb.ge(root.get("price"), minPrice);
+    }
+
+    public static Specification<AdsEntity> priceTo(Integer maxPrice) {
+        return maxPrice == null ? null : (root, query, cb) -> cb.le(root.get("price"), maxPrice);
+    }
+
+    /**
+     * Объявления автора, сравнивается внешний ключ author_id без соединения с users
+     */
+    public static Specification<AdsEntity> author(Integer authorId) {
+        return authorId == null ? null : (root, query, cb) -> cb.equal(root.get("author").get("id"), authorId);
+    }
+
+    /**
+     * Объявления после курсора в порядке sort (keyset)
+     *
+     * @param price цена последнего объявления предыдущей страницы, нужна только для сортировки по цене
+     * @param id    id последнего объявления предыдущей страницы
+     */
+    public static Specification<AdsEntity> after(AdsSort sort, int price, int id) {
+        switch (sort) {
+            case NEWEST:
+                return (root, query, cb) -> cb.lt(root.get("id"), id);
+            case PRICE_ASC:
+                return (root, query, cb) -> cb.or(
+                        cb.gt(root.get("price"), price),
+                        cb.and(cb.equal(root.get("price"), price), cb.gt(root.get("id"), id)));
+            case PRICE_DESC:
+                return (root, query, cb) -> cb.or(
+                        cb.lt(root.get("price"), price),
+                        cb.and(cb.equal(root.get("price"), price), cb.lt(root.get("id"), id)));
+            default:
+                return (root, query, cb) -> cb.gt(root.get("id"), id);
+        }
+    }
+
+    /**
+     * Порядок строк; id в конце делает порядок однозначным для курсора
+     */
+    public static Sort orderBy(AdsSort sort) {
+        switch (sort) {
+            case NEWEST:
+                return Sort.by(Sort.Direction.DESC, "id");
+            case PRICE_ASC:
+                return Sort.by(Sort.Direction.ASC, "price", "id");
+            case PRICE_DESC:
+                return Sort.by(Sort.Direction.DESC, "price", "id");
+            default:
+                return Sort.by(Sort.Direction.ASC, "id");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.skypro.homework.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.skypro.homework.entity.CollectionVersionEntity;
+
+/**
+ * Интерфейс CollectionVersionRepository
+ * для работы с БД (для версий списков)
+ */
+@Repository
+public interface CollectionVersionRepository extends JpaRepository<CollectionVersionEntity, String> {
+
+    /**
+     * Увеличить версию списка одним UPDATE; без транзакции выполняется в своей
+     *
+     * @return количество измененных строк, 0 - если строки списка еще нет
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE CollectionVersionEntity v SET v.version = v.version + 1 WHERE v.name = :name")
+    int increment(@Param("name") String name);
+
+    /**
+     * Версия списка - сумма версий всех его строк ("ads", "ads:1", ...)
+     */
+    @Query("SELECT COALESCE(SUM(v.version), 0) FROM CollectionVersionEntity v " +
+            "WHERE v.name = :name OR v.name LIKE CONCAT(:name, ':%')")
+    long sumVersions(@Param("name") String name);
+}
@@ -1,10 +1,16 @@
 package ru.skypro.homework.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.skypro.homework.entity.CommentEntity;
 
-import java.util.Collection;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Интерфейс CommentRepository
@@ -13,14 +19,55 @@ import java.util.Collection;
 @Repository
 public interface CommentRepository extends JpaRepository<CommentEntity, Integer> {
     // Collection<CommentEntity> getByAdsId(Integer adsId);
-    Collection<CommentEntity> getCommentEntitiesByAd_Id(Integer adsId);
+    /**
+     * Первая страница комментариев неудаленного объявления, новые первыми, вместе с авторами одним запросом
+     */
+    @Query("SELECT c FROM CommentEntity c JOIN FETCH c.author JOIN c.ad a WHERE a.id = :adsId AND a.deleted = false " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CommentEntity> findFirstPage(@Param("adsId") Integer adsId, Pageable pageable);
+
+    /**
+     * Страница комментариев неудаленного объявления после курсора (keyset по createdAt и id), новые первыми.
+     * Обслуживается индексом comment_ad_created_idx
+     */
+    @Query("SELECT c FROM CommentEntity c JOIN FETCH c.author JOIN c.ad a WHERE a.id = :adsId AND a.deleted = false " +
+            "AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id)) " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CommentEntity> findPageAfter(@Param("adsId") Integer adsId,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Integer id,
+                                      Pageable pageable);
 
     // CommentEntity getByIdAndAdsId(Integer adsId, Integer commentId);
 
-    CommentEntity getCommentEntityByAd_IdAndId(Integer adsId, Integer commentId);
+    /**
+     * Комментарий неудаленного объявления
+     */
+    @Query("SELECT c FROM CommentEntity c JOIN c.ad a WHERE a.id = :adsId AND c.id = :commentId AND a.deleted = false")
+    Optional<CommentEntity> findActiveByAdIdAndId(@Param("adsId") Integer adsId, @Param("commentId") Integer commentId);
 
     //void deleteByIdAndAdsId(Integer adsId, Integer commentId);
 
-    void deleteCommentEntitiesByAd_IdAndId(Integer adsId, Integer commentId);
+    /**
+     * Удалить комментарий неудаленного объявления
+     *
+     * @return количество удаленных комментариев, 0 или 1
+     */
+    @Modifying
+    @Query("DELETE FROM CommentEntity c WHERE c.ad.id = :adsId AND c.id = :commentId " +
+            "AND EXISTS (SELECT a.id FROM AdsEntity a WHERE a.id = :adsId AND a.deleted = false)")
+    int deleteByAdIdAndId(@Param("adsId") Integer adsId, @Param("commentId") Integer commentId);
+
+    /**
+     * id объявления и время каждого комментария, добавленного после since: пары [Integer, LocalDateTime]
+     */
+    @Query("SELECT c.ad.id, c.createdAt FROM CommentEntity c WHERE c.createdAt >= :since")
+    List<Object[]> findAdIdAndCreatedAtSince(@Param("since") LocalDateTime since);
+
+    /**
+     * id комментариев объявления порциями, для удаления комментариев удаленного объявления
+     */
+    @Query("SELECT c.id FROM CommentEntity c WHERE c.ad.id = :adsId")
+    List<Integer> findIdsByAdId(@Param("adsId") Integer adsId, Pageable pageable);
 
 }
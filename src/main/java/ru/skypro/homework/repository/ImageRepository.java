@@ -1,7 +1,87 @@
 package ru.skypro.homework.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.skypro.homework.entity.ImageEntity;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 public interface ImageRepository extends JpaRepository<ImageEntity, Integer> {
+
+    boolean existsByHash(String hash);
+
+    /**
+     * Из заданных хешей те, на которые ссылается хотя бы одна картинка
+     */
+    @Query("SELECT DISTINCT i.hash FROM ImageEntity i WHERE i.hash IN :hashes")
+    List<String> findHashesIn(@Param("hashes") Collection<String> hashes);
+
+    /**
+     * Уменьшенные копии не уже заданной ширины, от самой узкой, без содержимого
+     */
+    @Query("SELECT new ru.skypro.homework.entity.ImageEntity(i.id, i.hash, i.fileSize, i.mediaType) FROM ImageEntity i " +
+            "WHERE i.original.id = :originalId AND i.width >= :width ORDER BY i.width")
+    List<ImageEntity> findVariants(@Param("originalId") Integer originalId, @Param("width") Integer width,
+                                   Pageable pageable);
+
+    List<ImageEntity> findByOriginalId(Integer originalId);
+
+    /**
+     * Картинка объявления без содержимого: для ETag и 304 содержимое не нужно
+     */
+    @Query("SELECT new ru.skypro.homework.entity.ImageEntity(i.id, i.hash, i.fileSize, i.mediaType) " +
+            "FROM AdsEntity a JOIN a.imageEntity i WHERE a.id = :adsId AND a.deleted = false")
+    Optional<ImageEntity> findByAdsId(@Param("adsId") Integer adsId);
+
+    /**
+     * Аватар пользователя без содержимого
+     */
+    @Query("SELECT new ru.skypro.homework.entity.ImageEntity(i.id, i.hash, i.fileSize, i.mediaType) " +
+            "FROM UserEntity u JOIN u.imageEntity i WHERE u.id = :userId")
+    Optional<ImageEntity> findByUserId(@Param("userId") Integer userId);
+
+    /**
+     * Содержимое картинки, хранящееся в БД; null, если содержимое в файловом хранилище
+     */
+    @Query("SELECT i.data FROM ImageEntity i WHERE i.id = :id")
+    byte[] findDataById(@Param("id") Integer id);
+
+    /**
+     * Картинки и их уменьшенные копии по id исходных картинок, без содержимого
+     */
+    @Query("SELECT new ru.skypro.homework.entity.ImageEntity(i.id, i.hash, i.fileSize) FROM ImageEntity i " +
+            "WHERE i.id IN :ids OR i.original.id IN :ids")
+    List<ImageEntity> findWithVariantsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Из заданных картинок те, на которые не ссылаются ни объявления, ни пользователи
+     */
+    @Query("SELECT i.id FROM ImageEntity i WHERE i.id IN :ids " +
+            "AND NOT EXISTS (SELECT a.id FROM AdsEntity a WHERE a.imageEntity = i) " +
+            "AND NOT EXISTS (SELECT u.id FROM UserEntity u WHERE u.imageEntity = i)")
+    List<Integer> findUnreferencedIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Исходные картинки, на которые не ссылаются ни объявления, ни пользователи, без содержимого.
+     * <br> Картинки моложе before не берутся: загрузка могла еще не закоммитить ссылку на картинку
+     *
+     * @param after id последней картинки предыдущей пачки (keyset)
+     */
+    @Query("SELECT new ru.skypro.homework.entity.ImageEntity(i.id, i.hash, i.fileSize) FROM ImageEntity i " +
+            "WHERE i.id > :after AND i.original IS NULL AND (i.createdAt IS NULL OR i.createdAt < :before) " +
+            "AND NOT EXISTS (SELECT a.id FROM AdsEntity a WHERE a.imageEntity = i) " +
+            "AND NOT EXISTS (SELECT u.id FROM UserEntity u WHERE u.imageEntity = i) " +
+            "ORDER BY i.id")
+    List<ImageEntity> findOrphans(@Param("after") int after, @Param("before") LocalDateTime before, Pageable pageable);
+
+    /**
+     * id картинок, данные которых еще хранятся в БД
+     */
+    @Query("SELECT i.id FROM ImageEntity i WHERE i.data IS NOT NULL ORDER BY i.id")
+    List<Integer> findIdsWithData(Pageable pageable);
 }
@@ -0,0 +1,50 @@
+package ru.skypro.homework.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.skypro.homework.entity.OutboxEventEntity;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Интерфейс OutboxEventRepository
+ * для работы с БД (для событий outbox)
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+    /**
+     * Неопубликованные события в порядке записи, строки блокируются до конца транзакции.
+     * <br> На PostgreSQL обслуживается частичным индексом outbox_event_unpublished_idx (schema-postgresql.sql)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM OutboxEventEntity e WHERE e.position IS NULL ORDER BY e.id")
+    List<OutboxEventEntity> findUnpublished(Pageable pageable);
+
+    @Query("SELECT coalesce(max(e.position), 0) FROM OutboxEventEntity e")
+    long maxPosition();
+
+    /**
+     * Опубликованные события после позиции
+     */
+    @Query("SELECT e FROM OutboxEventEntity e WHERE e.position > :after ORDER BY e.position")
+    List<OutboxEventEntity> findPublishedAfter(@Param("after") long after, Pageable pageable);
+
+    /**
+     * Удалить опубликованные события старше даты, кроме последнего опубликованного:
+     * по нему {@link #maxPosition()} продолжает нумерацию, и позиции не начинаются заново с 1
+     *
+     * @return количество удаленных событий
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxEventEntity e WHERE e.position IS NOT NULL AND e.createdAt < :before " +
+            "AND e.position < (SELECT max(o.position) FROM OutboxEventEntity o)")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
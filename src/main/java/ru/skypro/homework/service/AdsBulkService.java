@@ -0,0 +1,12 @@
+package ru.skypro.homework.service;
+
+import org.springframework.security.core.Authentication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface AdsBulkService {
+    int importAds(InputStream ndjson, Authentication authentication) throws IOException;
+    void exportAds(OutputStream ndjson) throws IOException;
+}
@@ -4,13 +4,15 @@ package ru.skypro.homework.service;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.multipart.MultipartFile;
 import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.AdsFilter;
 import ru.skypro.homework.dto.CreateAds;
 import ru.skypro.homework.dto.FullAds;
+import ru.skypro.homework.dto.ResponseWrapperAds;
 
 import java.util.Collection;
 
 public interface AdsService {
-    Collection<Ads> getAllAds(String title);
+    ResponseWrapperAds<Ads> getAllAds(AdsFilter filter, String cursor, Integer size);
     Ads createAds(CreateAds createAds, MultipartFile image, Authentication authentication);
     FullAds getAds(Integer adsId);
     void deleteAds(Integer adsId);
@@ -8,7 +8,7 @@ import ru.skypro.homework.entity.AdsEntity;
 
 
 public interface CommentService {
-    ResponseWrapperComment getComments(Integer adsId);
+    ResponseWrapperComment getComments(Integer adsId, String cursor, Integer size);
     Comment addComment(Integer adsId, CreateComment createComment, Authentication authentication);
 
     void deleteComment(Integer adsId, Integer commentId);
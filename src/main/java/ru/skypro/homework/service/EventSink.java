@@ -0,0 +1,20 @@
+package ru.skypro.homework.service;
+
+import ru.skypro.homework.dto.DomainEvent;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Получатель опубликованных событий outbox.
+ * <br> Вызывается в транзакции публикации: исключение откатывает ее, и пачка публикуется повторно,
+ * поэтому доставка не реже одного раза, повторы потребитель отсеивает по позиции.
+ * Реализация выбирается свойством outbox.sink.type (memory или file)
+ */
+public interface EventSink {
+
+    /**
+     * @param events события по возрастанию позиции
+     */
+    void publish(List<DomainEvent> events) throws IOException;
+}
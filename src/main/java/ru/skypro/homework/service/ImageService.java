@@ -1,12 +1,27 @@
 package ru.skypro.homework.service;
 
+import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 import ru.skypro.homework.entity.ImageEntity;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 
 public interface ImageService {
     ImageEntity downloadImage(MultipartFile image) throws IOException;
     void deleteImage(Integer id);
+
+    /**
+     * Удалить картинки вместе с уменьшенными копиями, кроме тех, на которые еще есть ссылки
+     *
+     * @param ids id исходных картинок
+     * @return удаленные картинки и копии, без содержимого
+     */
+    List<ImageEntity> deleteImages(Collection<Integer> ids);
     byte[] getImage(Integer id);
+    ImageEntity getAdsImage(Integer adsId);
+    ImageEntity getUserImage(Integer userId);
+    Resource getImageContent(ImageEntity image);
+    ImageEntity getVariant(ImageEntity image, Integer width);
 }
@@ -0,0 +1,49 @@
+package ru.skypro.homework.service;
+
+import org.springframework.core.io.Resource;
+import ru.skypro.homework.entity.ImageEntity;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Хранилище содержимого картинок.
+ * <br> Строка image хранит только метаданные, байты кладет и отдает реализация хранилища.
+ * Реализация выбирается свойством image.storage.type (db или fs)
+ */
+public interface ImageStorage {
+
+    /**
+     * Сохранить содержимое картинки, у картинки уже заполнен hash.
+     * Вызывается в транзакции, которая сохраняет строку картинки
+     */
+    void store(ImageEntity image, byte[] data) throws IOException;
+
+    /**
+     * Сохранить содержимое картинки из временного файла, у картинки уже заполнен hash.
+     * Хранилище может забрать файл себе, вызывающий удаляет его, если файл остался на месте
+     */
+    void store(ImageEntity image, Path content) throws IOException;
+
+    /**
+     * Содержимое картинки для потоковой отдачи, для файлового хранилища - файл на диске
+     */
+    Resource load(ImageEntity image) throws IOException;
+
+    /**
+     * Удалить содержимое картинки, строка image к этому моменту уже удалена.
+     * Хранилище может отложить удаление до {@link #deleteUnreferenced(Instant)}
+     */
+    void delete(ImageEntity image) throws IOException;
+
+    /**
+     * Удалить содержимое, на которое не ссылается ни одна картинка и которое не записывалось с before.
+     * Хранилищу, у которого содержимое лежит в строке image, дочищать нечего
+     *
+     * @return количество удаленных объектов хранилища
+     */
+    default int deleteUnreferenced(Instant before) throws IOException {
+        return 0;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.skypro.homework.service;
+
+import ru.skypro.homework.dto.DomainEvent;
+import ru.skypro.homework.dto.DomainEventType;
+
+import java.util.List;
+
+/**
+ * Транзакционный outbox событий об изменении объявлений и комментариев
+ */
+public interface OutboxService {
+
+    /**
+     * Записать событие в текущей транзакции, без транзакции бросает исключение
+     *
+     * @param adsId   id объявления, может быть null
+     * @param payload данные события, сериализуются в JSON, может быть null
+     */
+    void record(DomainEventType type, Integer adsId, Object payload);
+
+    /**
+     * Опубликованные события после позиции
+     *
+     * @param after позиция последнего обработанного события, 0 - с начала
+     * @param limit количество событий
+     */
+    List<DomainEvent> getEvents(long after, Integer limit);
+}
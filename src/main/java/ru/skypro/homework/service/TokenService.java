@@ -0,0 +1,13 @@
+package ru.skypro.homework.service;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+import java.util.Optional;
+
+public interface TokenService {
+    String createToken(UserDetails userDetails);
+    Optional<Authentication> verify(String token);
+    Duration getTtl();
+}
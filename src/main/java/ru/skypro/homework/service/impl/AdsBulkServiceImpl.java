@@ -0,0 +1,203 @@
+package ru.skypro.homework.service.impl;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.BulkAds;
+import ru.skypro.homework.dto.DomainEventType;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.exception.InvalidImportException;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsBulkService;
+import ru.skypro.homework.service.OutboxService;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Сервис AdsBulkServiceImpl
+ * Массовый импорт и экспорт объявлений в формате NDJSON
+ * <br> Импорт сначала читает и проверяет весь запрос (не больше ads.bulk.max-rows строк), потом в одной
+ * транзакции пишет пачками JDBC по ads.bulk.batch-size строк мимо Hibernate: медленный клиент не держит транзакцию.
+ * Ссылаться можно только на свои картинки - картинки своих объявлений и свой аватар.
+ * Экспорт читает таблицу курсором и пишет строки в ответ по мере чтения
+ */
+@Slf4j
+@Service
+public class AdsBulkServiceImpl implements AdsBulkService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO ads (author_id, title, price, description, image_id) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String OWN_IMAGES_SQL =
+            "SELECT image_id FROM ads WHERE author_id = :author AND deleted = false AND image_id IN (:images) " +
+            "UNION SELECT image_id FROM users WHERE id = :author AND image_id IN (:images)";
+
+    private static final String EXPORT_SQL =
+            "SELECT id, author_id, title, price, description, image_id FROM ads WHERE deleted = false ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final UserRepository userRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final int batchSize;
+
+    private final int maxRows;
+
+    private final CollectionVersions collectionVersions;
+
+    private final OutboxService outboxService;
+
+    public AdsBulkServiceImpl(DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              UserRepository userRepository,
+                              ObjectMapper objectMapper,
+                              @Value("${ads.bulk.batch-size:500}") int batchSize,
+                              @Value("${ads.bulk.max-rows:10000}") int maxRows,
+                              CollectionVersions collectionVersions,
+                              OutboxService outboxService) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(batchSize);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxRows = maxRows;
+        this.collectionVersions = collectionVersions;
+        this.outboxService = outboxService;
+    }
+
+    /**
+     * Импорт объявлений от имени авторизованного пользователя
+     *
+     * @param ndjson         по объявлению {@link BulkAds} в строке
+     * @param authentication авторизованный пользователь
+     * @return количество добавленных объявлений
+     * @throws InvalidImportException если строк больше ads.bulk.max-rows, цена отрицательная
+     *                                или картинка не принадлежит пользователю
+     */
+    @Override
+    public int importAds(InputStream ndjson, Authentication authentication) throws IOException {
+        log.debug("Вызван метод массового импорта объявлений");
+        UserEntity author = userRepository.findByEmailIgnoreCase(authentication.getName()).orElseThrow();
+        List<BulkAds> rows = read(ndjson);
+        Integer imported = transactionTemplate.execute(status -> {
+            checkImages(author.getId(), rows);
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            int count = 0;
+            for (BulkAds ads : rows) {
+                batch.add(new Object[]{author.getId(), ads.getTitle(), ads.getPrice(), ads.getDescription(), ads.getImage()});
+                if (batch.size() == batchSize) {
+                    count += flush(batch);
+                }
+            }
+            count += flush(batch);
+            collectionVersions.adsChanged();
+            // id вставленных строк пакетная вставка не возвращает, событие одно на весь импорт
+            outboxService.record(DomainEventType.ADS_IMPORTED, null, Map.of("author", author.getId(), "count", count));
+            return count;
+        });
+        return imported == null ? 0 : imported;
+    }
+
+    /**
+     * Чтение и проверка всех строк импорта до открытия транзакции
+     */
+    private List<BulkAds> read(InputStream ndjson) throws IOException {
+        List<BulkAds> rows = new ArrayList<>();
+        try (MappingIterator<BulkAds> iterator = objectMapper.readerFor(BulkAds.class).readValues(ndjson)) {
+            while (iterator.hasNext()) {
+                BulkAds ads = iterator.next();
+                if (rows.size() == maxRows) {
+                    throw new InvalidImportException("Не больше " + maxRows + " объявлений за один импорт");
+                }
+                if (ads.getPrice() < 0) {
+                    throw new InvalidImportException("Цена должна быть больше 0!");
+                }
+                rows.add(ads);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Картинки импорта должны быть картинками неудаленных объявлений пользователя или его аватаром
+     */
+    private void checkImages(Integer authorId, List<BulkAds> rows) {
+        List<Integer> images = rows.stream().map(BulkAds::getImage).filter(Objects::nonNull).distinct()
+                .collect(Collectors.toList());
+        Set<Integer> own = new HashSet<>();
+        for (int from = 0; from < images.size(); from += batchSize) {
+            List<Integer> chunk = images.subList(from, Math.min(from + batchSize, images.size()));
+            own.addAll(namedJdbcTemplate.queryForList(OWN_IMAGES_SQL, Map.of("author", authorId, "images", chunk), Integer.class));
+        }
+        images.stream().filter(image -> !own.contains(image)).findFirst().ifPresent(image -> {
+            throw new InvalidImportException("Картинка " + image + " не принадлежит пользователю");
+        });
+    }
+
+    /**
+     * Экспорт всех неудаленных объявлений
+     *
+     * @param ndjson поток ответа, по объявлению {@link BulkAds} в строке
+     */
+    @Override
+    public void exportAds(OutputStream ndjson) throws IOException {
+        log.debug("Вызван метод массового экспорта объявлений");
+        try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(ndjson)) {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(EXPORT_SQL, rs -> {
+                BulkAds ads = new BulkAds();
+                ads.setPk(rs.getInt("id"));
+                ads.setAuthor((Integer) rs.getObject("author_id"));
+                ads.setTitle(rs.getString("title"));
+                ads.setPrice(rs.getInt("price"));
+                ads.setDescription(rs.getString("description"));
+                ads.setImage((Integer) rs.getObject("image_id"));
+                try {
+                    writer.write(ads);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+    }
+
+    private int flush(List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch);
+        int size = batch.size();
+        batch.clear();
+        return size;
+    }
+}
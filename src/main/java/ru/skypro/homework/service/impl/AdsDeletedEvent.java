@@ -0,0 +1,12 @@
+package ru.skypro.homework.service.impl;
+
+import lombok.Value;
+
+/**
+ * Объявление помечено удаленным; подписчики его комментариев отключаются после коммита
+ */
+@Value
+class AdsDeletedEvent {
+
+    Integer adsId;
+}
@@ -0,0 +1,133 @@
+package ru.skypro.homework.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.CommentRepository;
+import ru.skypro.homework.service.ImageService;
+
+import java.util.List;
+
+/**
+ * Очистка удаленных объявлений ({@link ru.skypro.homework.entity.AdsEntity#isDeleted()}).
+ * <br> Комментарии объявления удаляются порциями по ads.reaper.batch-size, каждая порция в своей транзакции,
+ * чтобы не держать блокировки на тысячах строк. Последней транзакцией удаляются само объявление
+ * и его картинка, если на нее больше никто не ссылается.
+ * <br> Объявления перебираются по возрастанию id; если очистить объявление не удалось, ошибка пишется в лог,
+ * объявление пропускается и очищается при следующем запуске, остальные очищаются как обычно
+ */
+@Slf4j
+@Component
+public class AdsReaper {
+
+    private final AdsRepository adsRepository;
+
+    private final CommentRepository commentRepository;
+
+    private final ImageService imageService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    /**
+     * Полностью очищенные объявления
+     */
+    private final Counter reapedAds;
+
+    /**
+     * Удаленные комментарии очищенных объявлений
+     */
+    private final Counter reapedComments;
+
+    /**
+     * Объявления, которые не удалось очистить
+     */
+    private final Counter failedAds;
+
+    public AdsReaper(AdsRepository adsRepository,
+                     CommentRepository commentRepository,
+                     ImageService imageService,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${ads.reaper.batch-size:1000}") int batchSize,
+                     MeterRegistry meterRegistry) {
+        this.adsRepository = adsRepository;
+        this.commentRepository = commentRepository;
+        this.imageService = imageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.reapedAds = meterRegistry.counter("ads.reaper.ads");
+        this.reapedComments = meterRegistry.counter("ads.reaper.comments");
+        this.failedAds = meterRegistry.counter("ads.reaper.failed");
+    }
+
+    @Scheduled(fixedDelayString = "${ads.reaper.interval:10000}")
+    public void reap() {
+        try {
+            reapAll();
+        } catch (RuntimeException e) {
+            log.warn("Ошибка очистки удаленных объявлений, повтор при следующем запуске", e);
+        }
+    }
+
+    /**
+     * Очистить все удаленные объявления за один проход по id
+     *
+     * @return количество очищенных объявлений, без пропущенных из-за ошибки
+     */
+    public int reapAll() {
+        int total = 0;
+        int after = 0;
+        List<Integer> ids;
+        while (!(ids = adsRepository.findDeletedIdsAfter(after, PageRequest.of(0, 100))).isEmpty()) {
+            for (Integer adsId : ids) {
+                try {
+                    reap(adsId);
+                    total++;
+                } catch (RuntimeException e) {
+                    failedAds.increment();
+                    log.warn("Не удалось очистить объявление {}, повтор при следующем запуске", adsId, e);
+                }
+            }
+            after = ids.get(ids.size() - 1);
+        }
+        return total;
+    }
+
+    /**
+     * Удалить комментарии порциями, затем объявление и его картинку
+     */
+    private void reap(Integer adsId) {
+        int comments = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> deleteComments(adsId));
+            comments += deleted;
+        } while (deleted == batchSize);
+        transactionTemplate.executeWithoutResult(status -> {
+            Integer imageId = adsRepository.findImageIdById(adsId);
+            adsRepository.deleteAllByIdInBatch(List.of(adsId));
+            if (imageId != null) {
+                imageService.deleteImages(List.of(imageId));
+            }
+        });
+        reapedAds.increment();
+        reapedComments.increment(comments);
+        log.debug("Объявление {} очищено, удалено комментариев: {}", adsId, comments);
+    }
+
+    private int deleteComments(Integer adsId) {
+        List<Integer> ids = commentRepository.findIdsByAdId(adsId, PageRequest.of(0, batchSize));
+        if (!ids.isEmpty()) {
+            commentRepository.deleteAllByIdInBatch(ids);
+        }
+        return ids.size();
+    }
+}
@@ -4,25 +4,43 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import ru.skypro.homework.CacheConfig;
 import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.AdsFilter;
+import ru.skypro.homework.dto.AdsSort;
 import ru.skypro.homework.dto.CreateAds;
+import ru.skypro.homework.dto.DomainEventType;
 import ru.skypro.homework.dto.FullAds;
+import ru.skypro.homework.dto.ResponseWrapperAds;
 import ru.skypro.homework.entity.AdsEntity;
 import ru.skypro.homework.entity.ImageEntity;
 import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.exception.InvalidCursorException;
+import ru.skypro.homework.exception.ObjectAbsenceException;
 import ru.skypro.homework.mapper.AdsMapper;
 import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.AdsSpecifications;
 import ru.skypro.homework.repository.UserRepository;
 import ru.skypro.homework.service.AdsService;
 import ru.skypro.homework.service.ImageService;
+import ru.skypro.homework.service.OutboxService;
 import ru.skypro.homework.service.UserService;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 /**
@@ -37,6 +55,16 @@ public class AdsServiceImpl implements AdsService {
 
     private static final Logger logger = LoggerFactory.getLogger(Ads.class);
 
+    /**
+     * Размер страницы ленты по умолчанию
+     */
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * Максимальный размер страницы ленты
+     */
+    private static final int MAX_PAGE_SIZE = 100;
+
     /**
      * Поле репозитория объявлении
      */
@@ -58,6 +86,26 @@ public class AdsServiceImpl implements AdsService {
     private final UserService userService;
     private final ImageService imageService;
 
+    /**
+     * Версии списков для ETag
+     */
+    private final CollectionVersions collectionVersions;
+
+    /**
+     * Outbox событий об изменении объявлений
+     */
+    private final OutboxService outboxService;
+
+    /**
+     * События для подписчиков комментариев
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Еще не записанные в базу просмотры
+     */
+    private final AdsViewCounter adsViewCounter;
+
 
     /**
      * Конструктор - создание нового объекта репозитория
@@ -79,18 +127,101 @@ public class AdsServiceImpl implements AdsService {
 //    }
 
     /**
-     * Получение списка всех объявлений из базы данных
+     * Получение страницы объявлений из базы данных
+     * <br> Лента читается по курсору (keyset в порядке {@link AdsFilter#getSort()}).
+     * Поиск только по заголовку, без других фильтров и порядка, идет постранично по релевантности
      *
-     * @return список(коллекцию) объявлений
+     * @param filter фильтры и порядок ленты
+     * @param cursor курсор из nextCursor предыдущей страницы, null - для первой страницы
+     * @param size   размер страницы, не больше {@link #MAX_PAGE_SIZE}
+     * @return страница объявлений и курсор следующей страницы
      */
     @Override
-    public Collection<Ads> getAllAds(String title) {
-        logger.info("Вызван метод получения всех объявлений");
-        if (title == null) {
+    @Transactional(readOnly = true)
+    public ResponseWrapperAds<Ads> getAllAds(AdsFilter filter, String cursor, Integer size) {
+        logger.debug("Вызван метод получения всех объявлений");
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        String title = filter.getTitle() == null || filter.getTitle().isBlank() ? null : likePattern(filter.getTitle());
+        if (title != null && filter.getSort() == null && !filter.hasFilters()) {
+            return searchAds(title, decodePage(cursor), pageSize);
+        }
+        AdsSort sort = filter.getSort() == null ? AdsSort.OLDEST : filter.getSort();
+        Specification<AdsEntity> spec = Specification.where(AdsSpecifications.notDeleted())
+                .and(AdsSpecifications.titleContains(title))
+                .and(AdsSpecifications.priceFrom(filter.getMinPrice()))
+                .and(AdsSpecifications.priceTo(filter.getMaxPrice()))
+                .and(AdsSpecifications.author(filter.getAuthor()));
+        if (cursor != null && !cursor.isBlank()) {
+            spec = spec.and(decodeCursor(sort, cursor));
+        }
+        List<Ads> page = adsRepository.findFeed(spec, AdsSpecifications.orderBy(sort), pageSize + 1);
+        if (page.size() <= pageSize) {
+            return new ResponseWrapperAds<>(page);
+        }
+        page = page.subList(0, pageSize);
+        return new ResponseWrapperAds<>(page, encodeCursor(sort, page.get(pageSize - 1)));
+    }
 
-            return adsMapper.adsEntityToCollectionDto(adsRepository.findAll());
+    /**
+     * Поиск объявлений по подстроке заголовка без учета регистра
+     *
+     * @param pattern  подстрока заголовка для LIKE
+     * @param page     номер страницы
+     * @param pageSize размер страницы
+     * @return страница найденных объявлений и номер следующей страницы
+     */
+    private ResponseWrapperAds<Ads> searchAds(String pattern, int page, int pageSize) {
+        Slice<Ads> slice = adsRepository.searchByTitle(pattern, PageRequest.of(page, pageSize));
+        return new ResponseWrapperAds<>(slice.getContent(), slice.hasNext() ? String.valueOf(page + 1) : null);
+    }
+
+    /**
+     * Подстрока в нижнем регистре с экранированными символами % и _
+     */
+    private static String likePattern(String title) {
+        return title.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    /**
+     * Курсор ленты: id последнего объявления, при сортировке по цене - цена и id через '_'
+     */
+    private static String encodeCursor(AdsSort sort, Ads last) {
+        return isByPrice(sort) ? last.getPrice() + "_" + last.getPk() : String.valueOf(last.getPk());
+    }
+
+    private static Specification<AdsEntity> decodeCursor(AdsSort sort, String cursor) {
+        try {
+            if (!isByPrice(sort)) {
+                return AdsSpecifications.after(sort, 0, Integer.parseInt(cursor));
+            }
+            int separator = cursor.indexOf('_');
+            return AdsSpecifications.after(sort,
+                    Integer.parseInt(cursor.substring(0, separator)),
+                    Integer.parseInt(cursor.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Некорректный курсор объявлений");
+        }
+    }
+
+    /**
+     * Номер страницы поиска из курсора
+     */
+    private static int decodePage(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            return Math.max(Integer.parseInt(cursor), 0);
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException("Некорректный курсор объявлений");
         }
-        return adsMapper.adsEntityToCollectionDto(adsRepository.findByTitleLikeIgnoreCase(title));
+    }
+
+    private static boolean isByPrice(AdsSort sort) {
+        return sort == AdsSort.PRICE_ASC || sort == AdsSort.PRICE_DESC;
     }
 
     /**
@@ -107,7 +238,7 @@ public class AdsServiceImpl implements AdsService {
             throw new IllegalArgumentException("Цена должна быть больше 0!");
         }
 
-        logger.info("Вызван метод добавления объявления");
+        logger.debug("Вызван метод добавления объявления");
 
         AdsEntity adsEntity = adsMapper.toEntity(createAds);
         UserEntity author = userRepository.findByEmailIgnoreCase(authentication.getName()).orElseThrow(RuntimeException::new); //TODO сделать свое исключение
@@ -122,8 +253,11 @@ public class AdsServiceImpl implements AdsService {
 
         adsEntity.setImageEntity(adImage);
         adsRepository.save(adsEntity);
+        collectionVersions.adsChanged();
 
-        return adsMapper.toAdsDto(adsEntity);
+        Ads ads = adsMapper.toAdsDto(adsEntity);
+        outboxService.record(DomainEventType.ADS_CREATED, ads.getPk(), ads);
+        return ads;
     }
 
     /**
@@ -133,20 +267,32 @@ public class AdsServiceImpl implements AdsService {
      * @return возвращает объявление по идентификатору (id)
      */
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.ADS_CACHE, key = "#adsId")
     public FullAds getAds(Integer adsId) {
-        logger.info("Вызван метод получения объявления по идентификатору (id)");
-        return adsMapper.toFullAdsDto(adsRepository.findById(adsId).orElseThrow());
+        logger.debug("Вызван метод получения объявления по идентификатору (id)");
+        return adsMapper.toFullAdsDto(adsRepository.findWithAuthorById(adsId).orElseThrow());
     }
 
     /**
      * Удаление объявления по идентификатору (id), хранящихся в базе данных
+     * <br> Объявление только помечается удаленным и сразу пропадает из ленты и карточки.
+     * Комментарии, само объявление и картинку порциями удаляет {@link AdsReaper},
+     * поэтому время удаления не зависит от числа комментариев
      *
      * @param adsId          идентификатор объявления, не может быть null
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.ADS_CACHE, key = "#adsId")
     public void deleteAds(Integer adsId) {
-        logger.info("Вызван метод удаления объявления по идентификатору (id)");
-        adsRepository.deleteById(adsId);
+        logger.debug("Вызван метод удаления объявления по идентификатору (id)");
+        if (adsRepository.markDeleted(adsId) == 0) {
+            throw new ObjectAbsenceException("Объявление не найдено");
+        }
+        collectionVersions.adsChanged();
+        collectionVersions.commentsChanged(adsId); // сохраненный ETag комментариев не должен давать 304 вместо 404
+        outboxService.record(DomainEventType.ADS_DELETED, adsId, null);
+        eventPublisher.publishEvent(new AdsDeletedEvent(adsId));
     }
 
     /**
@@ -157,6 +303,7 @@ public class AdsServiceImpl implements AdsService {
      * @return возвращает обновленное объявление по идентификатору (id)
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.ADS_CACHE, key = "#adsId")
     public Ads updateAds(CreateAds createAds, Integer adsId) {
         if (adsId == null) {
             throw new RuntimeException("Такого объявления не существует!");
@@ -166,27 +313,38 @@ public class AdsServiceImpl implements AdsService {
             throw new RuntimeException("Цена должна быть больше 0!");
         }
 
-        AdsEntity updateAd = adsRepository.findById(adsId).orElseThrow(RuntimeException::new);
+        AdsEntity updateAd = adsRepository.findActiveById(adsId).orElseThrow(RuntimeException::new);
         updateAd.setTitle(createAds.getTitle());
         updateAd.setPrice(createAds.getPrice());
         updateAd.setDescription(createAds.getDescription());
 
         adsRepository.save(updateAd);
+        collectionVersions.adsChanged();
 
-        return adsMapper.toAdsDto(updateAd);
+        Ads ads = adsMapper.toAdsDto(updateAd);
+        outboxService.record(DomainEventType.ADS_UPDATED, adsId, ads);
+        return ads;
     }
 
     /**
      * Получение объявлений авторизованного пользователя, хранящихся в базе данных
+     * <br> Автор видит количество просмотров своих объявлений
      *
      * @param authentication авторизованный пользователь
      * @return возвращает все объявления авторизованного пользователя
      */
     @Override
+    @Transactional(readOnly = true)
     public Collection<Ads> getAdsMe(Authentication authentication) {
-        logger.info("Вызван метод получения объявлений авторизованного пользователя");
-        Collection<AdsEntity> AdsEntity = adsRepository.findByAuthorId(userService.getUser(authentication).getId());
-        return adsMapper.adsEntityToCollectionDto(AdsEntity);
+        logger.debug("Вызван метод получения объявлений авторизованного пользователя");
+        Collection<AdsEntity> adsEntities = adsRepository.findByAuthorIdAndDeletedFalse(userService.getUser(authentication).getId());
+        List<Ads> result = new ArrayList<>(adsEntities.size());
+        for (AdsEntity adsEntity : adsEntities) {
+            Ads ads = adsMapper.toAdsDto(adsEntity);
+            ads.setViews(adsEntity.getViews() + adsViewCounter.pending(adsEntity.getId()));
+            result.add(ads);
+        }
+        return result;
     }
 
     /**
@@ -197,8 +355,9 @@ public class AdsServiceImpl implements AdsService {
      * @return объявление с новой картинкой
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.ADS_CACHE, key = "#adsId")
     public String updateImage(Integer adsId, MultipartFile image) {
-        logger.info("Вызван метод обновления картинки объявления");
+        logger.debug("Вызван метод обновления картинки объявления");
         if (adsId == null) {
             throw new RuntimeException("Такого объявления не существует!");
         }
@@ -210,12 +369,16 @@ public class AdsServiceImpl implements AdsService {
             throw new RuntimeException("Ошибка при загрузке фото");
         }
 
-        int imageId = adImage.getId();
-        imageService.deleteImage(imageId);
-
-        AdsEntity ad = adsRepository.findById(adsId).orElseThrow(RuntimeException::new);
+        AdsEntity ad = adsRepository.findActiveById(adsId).orElseThrow(RuntimeException::new);
+        ImageEntity oldImage = ad.getImageEntity();
         ad.setImageEntity(adImage);
-        adsRepository.save(ad);
-        return adsMapper.toAdsDto(ad).getImage();
+        adsRepository.saveAndFlush(ad); // ссылка на старую картинку должна уйти из базы до ее удаления
+        if (oldImage != null) {
+            imageService.deleteImage(oldImage.getId());
+        }
+        collectionVersions.adsChanged();
+        Ads ads = adsMapper.toAdsDto(ad);
+        outboxService.record(DomainEventType.ADS_IMAGE_UPDATED, adsId, ads);
+        return ads.getImage();
     }
 }
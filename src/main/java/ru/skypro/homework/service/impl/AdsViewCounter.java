@@ -0,0 +1,148 @@
+package ru.skypro.homework.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.CacheConfig;
+import ru.skypro.homework.dto.FullAds;
+import ru.skypro.homework.mapper.AdsMapper;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Счетчики просмотров объявлений.
+ * <br> Просмотр только увеличивает {@link LongAdder} объявления в памяти, без записи в базу.
+ * Раз в ads.views.flush-interval мс накопленные приращения пишутся в ads.views одним пакетом UPDATE,
+ * после чего записи этих объявлений сбрасываются из кеша {@link CacheConfig#ADS_CACHE}.
+ * <br> Запись подменяет карту счетчиков новой и суммирует отцепленную. Просмотр увеличивает счетчик
+ * под разделяемой блокировкой {@link #swapLock}, а подмена берет ее монопольно, поэтому после подмены
+ * в старую карту никто не пишет и приращения не теряются.
+ * <br> При аварийной остановке теряются просмотры не больше чем за ads.views.flush-interval;
+ * при обычной остановке накопленное записывается в {@link #shutdown()}.
+ * Если запись не удалась, приращения возвращаются в счетчики и пишутся следующим пакетом
+ */
+@Slf4j
+@Component
+public class AdsViewCounter {
+
+    private static final String UPDATE_SQL = "UPDATE ads SET views = views + ? WHERE id = ?";
+
+    private volatile ConcurrentMap<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Просмотры держат блокировку на чтение, подмена {@link #pending} - на запись
+     */
+    private final StampedLock swapLock = new StampedLock();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AdsMapper adsMapper;
+
+    private final CollectionVersions collectionVersions;
+
+    /**
+     * Просмотры за последние сутки для популярных объявлений
+     */
+    private final PopularAdsTracker popularAdsTracker;
+
+    private final Cache adsCache;
+
+    /**
+     * Просмотры, записанные в базу
+     */
+    private final Counter flushed;
+
+    public AdsViewCounter(JdbcTemplate jdbcTemplate,
+                          AdsMapper adsMapper,
+                          CollectionVersions collectionVersions,
+                          PopularAdsTracker popularAdsTracker,
+                          CacheManager cacheManager,
+                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.adsMapper = adsMapper;
+        this.collectionVersions = collectionVersions;
+        this.popularAdsTracker = popularAdsTracker;
+        this.adsCache = cacheManager.getCache(CacheConfig.ADS_CACHE);
+        this.flushed = meterRegistry.counter("ads.views.flushed");
+        Gauge.builder("ads.views.pending", this, counter -> counter.pending.size()).register(meterRegistry);
+    }
+
+    /**
+     * Учесть просмотр объявления
+     *
+     * @param fullAds объявление, возможно из кеша; не меняется
+     * @return копия объявления с просмотрами из базы и еще не записанными
+     */
+    public FullAds viewed(FullAds fullAds) {
+        LongAdder adder;
+        long stamp = swapLock.readLock();
+        try {
+            adder = pending.computeIfAbsent(fullAds.getPk(), id -> new LongAdder());
+            adder.increment();
+        } finally {
+            swapLock.unlockRead(stamp);
+        }
+        popularAdsTracker.viewed(fullAds.getPk());
+        FullAds copy = adsMapper.copy(fullAds);
+        copy.setViews(fullAds.getViews() + adder.sum());
+        return copy;
+    }
+
+    /**
+     * Просмотры объявления, еще не записанные в базу
+     */
+    public long pending(Integer adsId) {
+        LongAdder adder = pending.get(adsId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${ads.views.flush-interval:5000}")
+    public synchronized void flush() {
+        ConcurrentMap<Integer, LongAdder> current;
+        long stamp = swapLock.writeLock();
+        try {
+            current = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.unlockWrite(stamp);
+        }
+        Map<Integer, Long> deltas = new HashMap<>();
+        current.forEach((adsId, adder) -> deltas.put(adsId, adder.sum()));
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        deltas.forEach((adsId, delta) -> batch.add(new Object[]{delta, adsId}));
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+        } catch (RuntimeException e) {
+            deltas.forEach((adsId, delta) -> pending.computeIfAbsent(adsId, id -> new LongAdder()).add(delta));
+            log.warn("Не удалось записать просмотры {} объявлений, повтор при следующей записи", batch.size(), e);
+            return;
+        }
+        deltas.forEach((adsId, delta) -> {
+            adsCache.evict(adsId);
+            flushed.increment(delta);
+        });
+        collectionVersions.viewsChanged();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -1,47 +1,68 @@
 package ru.skypro.homework.service.impl;
 
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.stereotype.Service;
 import ru.skypro.homework.dto.RegisterReq;
 import ru.skypro.homework.dto.Role;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.mapper.UserMapper;
+import ru.skypro.homework.repository.UserRepository;
 import ru.skypro.homework.service.AuthService;
+import ru.skypro.homework.service.TokenService;
+
+import java.util.Optional;
 
 @Service
 public class AuthServiceImpl implements AuthService {
 
-  private final UserDetailsManager manager;
+  private final UserDetailsService userDetailsService;
+
+  private final UserRepository userRepository;
+
+  private final UserMapper userMapper;
 
   private final PasswordEncoder encoder;
 
-  public AuthServiceImpl(UserDetailsManager manager, PasswordEncoder passwordEncoder) {
-    this.manager = manager;
+  private final TokenService tokenService;
+
+  public AuthServiceImpl(UserDetailsService userDetailsService,
+                         UserRepository userRepository,
+                         UserMapper userMapper,
+                         PasswordEncoder passwordEncoder,
+                         TokenService tokenService) {
+    this.userDetailsService = userDetailsService;
+    this.userRepository = userRepository;
+    this.userMapper = userMapper;
     this.encoder = passwordEncoder;
+    this.tokenService = tokenService;
   }
 
   @Override
-  public boolean login(String userName, String password) {
-    if (!manager.userExists(userName)) { // если пользователя с таким именем нет, то фолс
-      return false;
+  public Optional<String> login(String userName, String password) {
+    UserDetails userDetails;
+    try {
+      userDetails = userDetailsService.loadUserByUsername(userName); // иноформация о пользователе
+    } catch (UsernameNotFoundException e) { // если пользователя с таким именем нет, то пусто
+      return Optional.empty();
+    }
+    if (!encoder.matches(password, userDetails.getPassword())) { // проверка совпадения паролей
+      return Optional.empty();
     }
-    UserDetails userDetails = manager.loadUserByUsername(userName); // иноформация о пользователе
-    return encoder.matches(password, userDetails.getPassword()); // проверка совпадения паролей
+    return Optional.of(tokenService.createToken(userDetails)); // токен для следующих запросов
   }
 
   @Override
   public boolean register(RegisterReq registerReq, Role role) {
-    if (manager.userExists(registerReq.getUsername())) { // если пользователь уже есть, то фолс
+    if (userRepository.findByEmailIgnoreCase(registerReq.getUsername()).isPresent()) { // если пользователь уже есть, то фолс
       return false;
     }
-    manager.createUser(
-        User.builder()
-            .passwordEncoder(this.encoder::encode)
-            .password(registerReq.getPassword())
-            .username(registerReq.getUsername())
-            .roles(role.name())
-            .build()); // создается новый пользователь
+    UserEntity userEntity = userMapper.toEntityFromReq(registerReq);
+    userEntity.setPassword(encoder.encode(registerReq.getPassword()));
+    userEntity.setRole(role);
+    userRepository.save(userEntity); // создается новый пользователь
     return true;
   }
 }
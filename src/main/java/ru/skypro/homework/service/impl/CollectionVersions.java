@@ -0,0 +1,185 @@
+package ru.skypro.homework.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.skypro.homework.entity.CollectionVersionEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.CollectionVersionRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Версии списков объявлений и комментариев для слабых ETag.
+ * <br> Версии хранятся в базе и увеличиваются в транзакции изменения, поэтому они общие для всех экземпляров
+ * приложения, не сбрасываются при перезапуске и видны сразу после коммита записи. Списки collection_version:
+ * {@link #ADS} - списки объявлений (в том числе счетчики комментариев в них), {@link #COMMENTS} - все комментарии
+ * сразу (в них имя автора), {@link #VIEWS} - счетчики просмотров. Версия комментариев одного объявления хранится
+ * в самом объявлении (ads.comments_version), поэтому памяти под версии на каждое объявление не нужно.
+ * <br> ETag - чтение нескольких строк по первичному ключу вместо запроса списка и сериализации ответа. Версии
+ * читаются в транзакции только для чтения, как и сами списки, и до них: при чтении с реплики ETag не новее ответа.
+ * <br> Чтобы все записи на сайте не ждали блокировку одной строки, версия общего списка разбита на
+ * collection-versions.stripes строк ("ads", "ads:1", ...), версия списка - их сумма. Транзакция увеличивает
+ * одну случайную строку один раз и перед самым коммитом, после остальных своих изменений: блокировка строки
+ * держится только на время коммита, а строки версий берутся всегда последними и в одном порядке
+ */
+@Slf4j
+@Component
+public class CollectionVersions {
+
+    static final String ADS = "ads";
+
+    static final String COMMENTS = "comments";
+
+    static final String VIEWS = "views";
+
+    private final CollectionVersionRepository collectionVersionRepository;
+
+    private final AdsRepository adsRepository;
+
+    private final int stripes;
+
+    public CollectionVersions(CollectionVersionRepository collectionVersionRepository, AdsRepository adsRepository,
+                              @Value("${collection-versions.stripes:16}") int stripes) {
+        this.collectionVersionRepository = collectionVersionRepository;
+        this.adsRepository = adsRepository;
+        this.stripes = Math.max(stripes, 1);
+    }
+
+    /**
+     * Создание строк версий общих списков заранее, чтобы транзакция изменения только увеличивала существующую
+     */
+    @PostConstruct
+    public void createStripes() {
+        for (String name : new String[]{ADS, COMMENTS}) {
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                String row = stripeName(name, stripe);
+                try {
+                    if (!collectionVersionRepository.existsById(row)) {
+                        collectionVersionRepository.saveAndFlush(new CollectionVersionEntity(row, 0));
+                    }
+                } catch (DataIntegrityViolationException e) {
+                    log.debug("Строку версии {} одновременно создал другой экземпляр", row);
+                }
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public String adsETag() {
+        return "W/\"ads-" + version(ADS) + "\"";
+    }
+
+    /**
+     * ETag объявлений автора: список у каждого пользователя свой, и в нем кроме объявлений есть счетчики просмотров
+     *
+     * @param userId id авторизованного пользователя
+     */
+    @Transactional(readOnly = true)
+    public String adsMeETag(Integer userId) {
+        return "W/\"me-" + userId + "-" + version(ADS) + "-" + version(VIEWS) + "\"";
+    }
+
+    @Transactional(readOnly = true)
+    public String commentsETag(Integer adsId) {
+        Long version = adsRepository.findCommentsVersionById(adsId);
+        return "W/\"comments-" + version(COMMENTS) + "-" + adsId + "-" + (version == null ? 0 : version) + "\"";
+    }
+
+    /**
+     * Объявления изменились, версия увеличится перед коммитом текущей транзакции
+     */
+    public void adsChanged() {
+        beforeCommit(ADS);
+    }
+
+    /**
+     * Комментарии объявления изменились, версия в объявлении увеличивается в текущей транзакции:
+     * строка объявления и так меняется вместе со счетчиком комментариев
+     */
+    public void commentsChanged(Integer adsId) {
+        adsRepository.incrementCommentsVersion(adsId);
+    }
+
+    /**
+     * Изменились данные во всех комментариях пользователя (имя автора)
+     */
+    public void allCommentsChanged() {
+        beforeCommit(COMMENTS);
+    }
+
+    /**
+     * Просмотры записаны в базу; пишет их только один поток, поэтому версия одна строка
+     */
+    public void viewsChanged() {
+        increment(VIEWS);
+    }
+
+    private long version(String name) {
+        return collectionVersionRepository.sumVersions(name);
+    }
+
+    /**
+     * Увеличить версию списка перед коммитом текущей транзакции, не больше одного раза за транзакцию.
+     * Без транзакции версия увеличивается сразу в своей
+     */
+    private void beforeCommit(String name) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            increment(stripeName(name, ThreadLocalRandom.current().nextInt(stripes)));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<String> names = new TreeSet<>();
+            pending = names;
+            TransactionSynchronizationManager.bindResource(this, names);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // строки версий в порядке имен: две транзакции не ждут друг друга по кругу
+                    for (String list : names) {
+                        increment(stripeName(list, ThreadLocalRandom.current().nextInt(stripes)));
+                    }
+                }
+
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(CollectionVersions.this);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(CollectionVersions.this, names);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CollectionVersions.this);
+                }
+            });
+        }
+        pending.add(name);
+    }
+
+    /**
+     * Увеличить версию; строка создается, если ее еще нет
+     * (если ее одновременно создадут две транзакции, вторая завершится ошибкой уникальности)
+     */
+    private void increment(String row) {
+        if (collectionVersionRepository.increment(row) == 0) {
+            collectionVersionRepository.saveAndFlush(new CollectionVersionEntity(row, 1));
+        }
+    }
+
+    private static String stripeName(String name, int stripe) {
+        return stripe == 0 ? name : name + ":" + stripe;
+    }
+}
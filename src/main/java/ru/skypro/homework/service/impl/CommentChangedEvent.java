@@ -0,0 +1,25 @@
+package ru.skypro.homework.service.impl;
+
+import lombok.Value;
+import ru.skypro.homework.dto.DomainEventType;
+
+/**
+ * Комментарий объявления добавлен, изменен или удален; рассылается подписчикам после коммита
+ */
+@Value
+class CommentChangedEvent {
+
+    Integer adsId;
+
+    DomainEventType type;
+
+    /**
+     * id комментария
+     */
+    int commentId;
+
+    /**
+     * {@link ru.skypro.homework.dto.Comment} или, для удаления, только его id
+     */
+    Object payload;
+}
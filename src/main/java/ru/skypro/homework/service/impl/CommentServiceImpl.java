@@ -4,24 +4,35 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.skypro.homework.CacheConfig;
 import ru.skypro.homework.dto.Comment;
 import ru.skypro.homework.dto.CreateComment;
+import ru.skypro.homework.dto.DomainEventType;
 import ru.skypro.homework.dto.ResponseWrapperComment;
 import ru.skypro.homework.entity.AdsEntity;
 import ru.skypro.homework.entity.CommentEntity;
 import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.exception.InvalidCursorException;
+import ru.skypro.homework.exception.ObjectAbsenceException;
 import ru.skypro.homework.mapper.CommentMapper;
 import ru.skypro.homework.repository.AdsRepository;
 import ru.skypro.homework.repository.CommentRepository;
 import ru.skypro.homework.repository.UserRepository;
 import ru.skypro.homework.service.CommentService;
+import ru.skypro.homework.service.OutboxService;
 
 import javax.validation.constraints.NotNull;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.Collection;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -35,6 +46,10 @@ public class CommentServiceImpl implements CommentService {
 
     private static final Logger logger = LoggerFactory.getLogger(Comment.class);
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    private static final int MAX_PAGE_SIZE = 100;
+
     /**
      * Поле репозитория комментариев
      */
@@ -55,6 +70,21 @@ public class CommentServiceImpl implements CommentService {
      */
     private final CommentMapper commentMapper;
 
+    /**
+     * Версии списков для ETag
+     */
+    private final CollectionVersions collectionVersions;
+
+    /**
+     * Outbox событий об изменении комментариев
+     */
+    private final OutboxService outboxService;
+
+    /**
+     * Публикация изменений для подписчиков {@link CommentStreamHub}
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
     /**
      * Конструктор - создание нового объекта репозитория
      *
@@ -72,18 +102,40 @@ public class CommentServiceImpl implements CommentService {
 //    }
 
     /**
-     * Позволяет получить все комментарии к определенному объявлению
-     * <br> Использован метод репозитория {@link ru.skypro.homework.repository.CommentRepository#getByAdsId(Integer)}
+     * Позволяет получить страницу комментариев к определенному объявлению, новые первыми
+     * <br> Комментарии читаются по курсору (keyset по createdAt и id), глубина страницы не влияет на скорость.
+     * Общее количество комментариев хранится в объявлении ({@link ru.skypro.homework.dto.Ads#getCommentCount()})
      *
-     * @param adsId идентификатор объявления, не может быть null
-     * @return возвращает все комментарии к определенному объявлению
+     * @param adsId  идентификатор объявления, не может быть null
+     * @param cursor курсор из nextCursor предыдущей страницы, null - для первой страницы
+     * @param size   размер страницы, не больше {@link #MAX_PAGE_SIZE}
+     * @return страница комментариев и курсор следующей страницы
+     * @throws ObjectAbsenceException если объявления нет или оно удалено
      */
     @Override
-    public ResponseWrapperComment getComments(Integer adsId) {
-        logger.info("Вызван метод получения всех комментариев к определенному объявлению");
-        Collection<CommentEntity> comments = commentRepository.getCommentEntitiesByAd_Id(adsId);
+    @Transactional(readOnly = true)
+    public ResponseWrapperComment getComments(Integer adsId, String cursor, Integer size) {
+        logger.debug("Вызван метод получения всех комментариев к определенному объявлению");
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<CommentEntity> comments;
+        if (cursor == null || cursor.isBlank()) {
+            comments = commentRepository.findFirstPage(adsId, pageRequest);
+        } else {
+            CommentEntity last = decodeCursor(cursor);
+            comments = commentRepository.findPageAfter(adsId, last.getCreatedAt(), last.getId(), pageRequest);
+        }
+        // пустая страница у удаленного объявления: объявление проверяется только в этом случае
+        if (comments.isEmpty() && !adsRepository.existsByIdAndDeletedFalse(adsId)) {
+            throw new ObjectAbsenceException("Объявление не найдено");
+        }
         ResponseWrapperComment responseWrapperComment = new ResponseWrapperComment();
+        if (comments.size() > pageSize) {
+            comments = comments.subList(0, pageSize);
+            responseWrapperComment.setNextCursor(encodeCursor(comments.get(pageSize - 1)));
+        }
         responseWrapperComment.setResults(commentMapper.commentsEntityToCommentsDtoCollection(comments));
+        responseWrapperComment.setCount(comments.size());
         return responseWrapperComment;
     }
 
@@ -97,35 +149,53 @@ public class CommentServiceImpl implements CommentService {
      * @return возвращает добавленный комментарий
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.ADS_CACHE, key = "#adsId")
     public Comment addComment(@NotNull Integer adsId, CreateComment createComment, Authentication authentication) {
-        logger.info("Вызван метод добавления комментария");
+        logger.debug("Вызван метод добавления комментария");
         CommentEntity commentEntity = commentMapper.toEntity(createComment);
-        AdsEntity adsEntity = adsRepository.findById(adsId).orElseThrow(RuntimeException::new);
+        if (adsRepository.addCommentCount(adsId, 1) == 0) {
+            throw new ObjectAbsenceException("Объявление не найдено");
+        }
+        AdsEntity adsEntity = adsRepository.getReferenceById(adsId);
         UserEntity author = userRepository.getUserEntitiesByEmail(authentication.getName());
         commentEntity.setAd(adsEntity);
         commentEntity.setAuthor(author);
         commentEntity.setCreatedAt(LocalDateTime.now());
         commentRepository.save(commentEntity);
+        collectionVersions.commentsChanged(adsId);
+        collectionVersions.adsChanged();
 
-        return commentMapper.toDto(commentEntity);
+        Comment comment = commentMapper.toDto(commentEntity);
+        outboxService.record(DomainEventType.COMMENT_CREATED, adsId, comment);
+        eventPublisher.publishEvent(new CommentChangedEvent(adsId, DomainEventType.COMMENT_CREATED, comment.getPk(), comment));
+        return comment;
     }
 
     /**
      * Позволяет удалить комментарий
-     * <br> Использован метод репозитория {@link ru.skypro.homework.repository.CommentRepository#deleteByIdAndAdsId(Integer, Integer)}
+     * <br> Использован метод репозитория {@link ru.skypro.homework.repository.CommentRepository#deleteByAdIdAndId(Integer, Integer)}
      *
      * @param commentId идентификатор комментария, не может быть null
      * @param adsId     идентификатор объявления, не может быть null
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.ADS_CACHE, key = "#adsId")
     public void deleteComment(Integer adsId, Integer commentId) {
-        logger.info("Вызван метод удаления комментария по идентификатору (id)");
-        commentRepository.deleteCommentEntitiesByAd_IdAndId(adsId, commentId);
+        logger.debug("Вызван метод удаления комментария по идентификатору (id)");
+        int deleted = commentRepository.deleteByAdIdAndId(adsId, commentId);
+        if (deleted > 0) {
+            adsRepository.addCommentCount(adsId, -deleted);
+            collectionVersions.commentsChanged(adsId);
+            collectionVersions.adsChanged();
+            Map<String, Integer> deletedComment = Map.of("pk", commentId);
+            outboxService.record(DomainEventType.COMMENT_DELETED, adsId, deletedComment);
+            eventPublisher.publishEvent(new CommentChangedEvent(adsId, DomainEventType.COMMENT_DELETED, commentId, deletedComment));
+        }
     }
 
     /**
      * Позволяет изменить комментарий
-     * <br> Использован метод репозитория {@link ru.skypro.homework.repository.CommentRepository#getByIdAndAdsId(Integer, Integer)}
+     * <br> Использован метод репозитория {@link ru.skypro.homework.repository.CommentRepository#findActiveByAdIdAndId(Integer, Integer)}
      * <br> Использован метод репозитория {@link ru.skypro.homework.repository.CommentRepository#save(Object)}
      *
      * @param commentId      идентификатор комментария, не может быть null
@@ -134,10 +204,36 @@ public class CommentServiceImpl implements CommentService {
      */
     @Override
     public Comment updateComment(Integer adsId, @NotNull Integer commentId, Comment comment) {
-        logger.info("Вызван метод обновления комментария по идентификатору (id)");
-        CommentEntity updateCommentEntity = commentRepository.getCommentEntityByAd_IdAndId(adsId, commentId);
+        logger.debug("Вызван метод обновления комментария по идентификатору (id)");
+        CommentEntity updateCommentEntity = commentRepository.findActiveByAdIdAndId(adsId, commentId)
+                .orElseThrow(() -> new ObjectAbsenceException("Комментарий не найден"));
         updateCommentEntity.setText(comment.getText());
         commentRepository.save(updateCommentEntity);
-        return commentMapper.toDto(updateCommentEntity);
+        collectionVersions.commentsChanged(adsId);
+        Comment updated = commentMapper.toDto(updateCommentEntity);
+        outboxService.record(DomainEventType.COMMENT_UPDATED, adsId, updated);
+        eventPublisher.publishEvent(new CommentChangedEvent(adsId, DomainEventType.COMMENT_UPDATED, updated.getPk(), updated));
+        return updated;
+    }
+
+    /**
+     * Курсор - base64url от "createdAt|id" последнего комментария страницы
+     */
+    private static String encodeCursor(CommentEntity comment) {
+        String value = comment.getCreatedAt() + "|" + comment.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CommentEntity decodeCursor(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('|');
+            CommentEntity comment = new CommentEntity();
+            comment.setCreatedAt(LocalDateTime.parse(value.substring(0, separator)));
+            comment.setId(Integer.valueOf(value.substring(separator + 1)));
+            return comment;
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Некорректный курсор комментариев");
+        }
     }
 }
@@ -0,0 +1,440 @@
+package ru.skypro.homework.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.skypro.homework.exception.ObjectAbsenceException;
+import ru.skypro.homework.exception.TooManySubscriptionsException;
+import ru.skypro.homework.repository.AdsRepository;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рассылка изменений комментариев подписчикам SSE (GET /ads/{id}/comments/stream).
+ * <br> Соединение держит асинхронный запрос сервлета, а не поток, поэтому простаивающие подписчики
+ * стоят только памяти и сокета. У каждого подписчика своя очередь на comments.stream.buffer-size событий,
+ * отправляют их comments.stream.dispatchers потоков. Подписчик, который не успевает читать
+ * и переполняет очередь, отключается: клиент переподключится и перечитает комментарии.
+ * <br> Запись в сокет блокирующая. Если отправка идет дольше comments.stream.send-timeout или подписчика
+ * отключают посреди отправки, ее поток прерывается, а пул получает поток взамен, пока тот не освободится:
+ * зависший клиент не останавливает рассылку остальным. Сам зависший поток ограничен таймаутом записи Tomcat
+ */
+@Slf4j
+@Component
+public class CommentStreamHub {
+
+    private final ConcurrentMap<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    /**
+     * Количество открытых потоков у пользователя
+     */
+    private final ConcurrentMap<String, Integer> userSubscriptions = new ConcurrentHashMap<>();
+
+    private final AdsRepository adsRepository;
+
+    private final ThreadPoolExecutor dispatcher;
+
+    private final int dispatchers;
+
+    private final int maxStalledDispatchers;
+
+    /**
+     * Потоки отправки, оставленные зависшим подписчикам и замененные в пуле
+     */
+    private int stalledDispatchers;
+
+    private final int maxPerUser;
+
+    private final ObjectMapper objectMapper;
+
+    private final int bufferSize;
+
+    private final long timeout;
+
+    private final long sendTimeout;
+
+    private final Counter evicted;
+
+    public CommentStreamHub(ObjectMapper objectMapper,
+                            AdsRepository adsRepository,
+                            @Value("${comments.stream.buffer-size:32}") int bufferSize,
+                            @Value("${comments.stream.dispatchers:4}") int dispatchers,
+                            @Value("${comments.stream.max-stalled-dispatchers:16}") int maxStalledDispatchers,
+                            @Value("${comments.stream.max-per-user:5}") int maxPerUser,
+                            @Value("${comments.stream.timeout:PT30M}") Duration timeout,
+                            @Value("${comments.stream.send-timeout:PT5S}") Duration sendTimeout,
+                            MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.adsRepository = adsRepository;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout.toMillis();
+        this.sendTimeout = sendTimeout.toNanos();
+        this.dispatchers = dispatchers;
+        this.maxStalledDispatchers = maxStalledDispatchers;
+        this.maxPerUser = maxPerUser;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // очередь без предела, поэтому потоков столько, сколько задано corePoolSize
+        this.dispatcher = new ThreadPoolExecutor(dispatchers, dispatchers + maxStalledDispatchers, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "comment-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.evicted = Counter.builder("comments.stream.evicted")
+                .description("Подписчики, отключенные из-за переполнения очереди или зависшей отправки")
+                .register(meterRegistry);
+        Gauge.builder("comments.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Подписаться на изменения комментариев объявления
+     *
+     * @param adsId идентификатор объявления
+     * @param user  логин подписчика
+     * @return поток событий, закрывается через comments.stream.timeout
+     * @throws ObjectAbsenceException        если объявления нет или оно удалено
+     * @throws TooManySubscriptionsException если у пользователя уже comments.stream.max-per-user потоков
+     */
+    public SseEmitter subscribe(Integer adsId, String user) {
+        if (!adsRepository.existsByIdAndDeletedFalse(adsId)) {
+            throw new ObjectAbsenceException("Объявление не найдено");
+        }
+        return subscribe(adsId, user, new SseEmitter(timeout));
+    }
+
+    SseEmitter subscribe(Integer adsId, String user, SseEmitter emitter) {
+        boolean[] acquired = new boolean[1];
+        userSubscriptions.compute(user, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxPerUser) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        if (!acquired[0]) {
+            throw new TooManySubscriptionsException("Открыто слишком много потоков комментариев");
+        }
+        Subscriber subscriber = new Subscriber(adsId, user, emitter);
+        subscribers.compute(adsId, (id, set) -> {
+            Set<Subscriber> result = set == null ? ConcurrentHashMap.newKeySet() : set;
+            result.add(subscriber);
+            return result;
+        });
+        subscriberCount.incrementAndGet();
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscriber.offer(Message.HEARTBEAT); // без первой записи клиент не получит заголовки ответа
+        return emitter;
+    }
+
+    /**
+     * Разослать изменение подписчикам объявления, только после коммита транзакции
+     */
+    @TransactionalEventListener
+    public void onCommentChanged(CommentChangedEvent event) {
+        Set<Subscriber> adSubscribers = subscribers.get(event.getAdsId());
+        if (adSubscribers == null) {
+            return;
+        }
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(event.getPayload());
+        } catch (JsonProcessingException e) {
+            log.warn("Ошибка при отправке события комментария", e);
+            return;
+        }
+        // JSON строится один раз на всех подписчиков
+        Message message = new Message(String.valueOf(event.getCommentId()), event.getType().name(), data);
+        for (Subscriber subscriber : adSubscribers) {
+            subscriber.offer(message);
+        }
+    }
+
+    /**
+     * Отключить подписчиков удаленного объявления, только после коммита удаления
+     */
+    @TransactionalEventListener
+    public void onAdsDeleted(AdsDeletedEvent event) {
+        closeAll(event.getAdsId());
+    }
+
+    /**
+     * Пустое событие всем подписчикам: прокси не закрывают соединение,
+     * а отключившиеся клиенты обнаруживаются при записи.
+     * Заодно отключаются подписчики объявлений, удаленных на других экземплярах
+     */
+    @Scheduled(fixedDelayString = "${comments.stream.heartbeat:15000}")
+    public void heartbeat() {
+        closeDeletedAds();
+        for (Set<Subscriber> adSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : adSubscribers) {
+                subscriber.offer(Message.HEARTBEAT);
+            }
+        }
+    }
+
+    /**
+     * Отключить подписчиков, отправка которым идет дольше comments.stream.send-timeout
+     */
+    @Scheduled(fixedDelayString = "${comments.stream.stall-check:1000}")
+    public void evictStalled() {
+        long now = System.nanoTime();
+        for (Set<Subscriber> adSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : adSubscribers) {
+                long sendStartedAt = subscriber.sendStartedAt;
+                if (sendStartedAt != 0 && now - sendStartedAt > sendTimeout) {
+                    log.debug("Отправка подписчику объявления {} зависла, подписчик отключен", subscriber.adsId);
+                    evicted.increment();
+                    subscriber.close();
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (Set<Subscriber> adSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : adSubscribers) {
+                subscriber.close();
+            }
+        }
+        dispatcher.shutdown();
+        dispatcher.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Поток отправки занят зависшим подписчиком: пул получает поток взамен, если их еще меньше
+     * comments.stream.max-stalled-dispatchers
+     *
+     * @return true, если поток взамен добавлен
+     */
+    private synchronized boolean addStalledDispatcher() {
+        if (stalledDispatchers >= maxStalledDispatchers) {
+            return false;
+        }
+        stalledDispatchers++;
+        dispatcher.setCorePoolSize(dispatchers + stalledDispatchers);
+        return true;
+    }
+
+    /**
+     * Зависшая отправка освободила поток, поток взамен больше не нужен
+     */
+    private synchronized void releaseStalledDispatcher() {
+        stalledDispatchers--;
+        dispatcher.setCorePoolSize(dispatchers + stalledDispatchers);
+    }
+
+    private void closeDeletedAds() {
+        List<Integer> adsIds = new ArrayList<>(subscribers.keySet());
+        for (int from = 0; from < adsIds.size(); from += 500) {
+            List<Integer> batch = adsIds.subList(from, Math.min(from + 500, adsIds.size()));
+            Set<Integer> deleted = new HashSet<>(batch);
+            try {
+                adsRepository.findActiveIds(batch).forEach(deleted::remove);
+            } catch (RuntimeException e) {
+                log.warn("Не удалось проверить объявления подписчиков комментариев", e);
+                return;
+            }
+            deleted.forEach(this::closeAll);
+        }
+    }
+
+    private void closeAll(Integer adsId) {
+        Set<Subscriber> adSubscribers = subscribers.get(adsId);
+        if (adSubscribers != null) {
+            for (Subscriber subscriber : adSubscribers) {
+                subscriber.close();
+            }
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        boolean[] removed = new boolean[1];
+        subscribers.computeIfPresent(subscriber.adsId, (id, set) -> {
+            removed[0] = set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+        if (removed[0]) {
+            subscriberCount.decrementAndGet();
+            userSubscriptions.computeIfPresent(subscriber.user, (user, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    /**
+     * Событие SSE; данные уже в JSON
+     */
+    private static final class Message {
+
+        static final Message HEARTBEAT = new Message(null, null, null);
+
+        final String id;
+
+        final String name;
+
+        final String data;
+
+        Message(String id, String name, String data) {
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+
+        SseEmitter.SseEventBuilder toEvent() {
+            if (this == HEARTBEAT) {
+                return SseEmitter.event().comment("");
+            }
+            return SseEmitter.event().id(id).name(name).data(data);
+        }
+    }
+
+    /**
+     * Подписчик с очередью событий. В пул отправки попадает не больше одной задачи на подписчика,
+     * а с эмиттером работает только поток отправки, поэтому медленный клиент не задерживает коммит
+     */
+    private final class Subscriber implements Runnable {
+
+        final Integer adsId;
+
+        final String user;
+
+        final SseEmitter emitter;
+
+        final Queue<Message> buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Поток отправки оставлен зависшему подписчику и заменен в пуле; меняется под монитором подписчика
+         */
+        private boolean stalled;
+
+        volatile boolean closed;
+
+        /**
+         * Эмиттер завершен или сломан, писать в него больше нечего
+         */
+        volatile boolean finished;
+
+        /**
+         * Начало текущей отправки по System.nanoTime(), 0 - отправки нет
+         */
+        volatile long sendStartedAt;
+
+        /**
+         * Поток, который сейчас отправляет события; меняется под монитором подписчика
+         */
+        private Thread sender;
+
+        Subscriber(Integer adsId, String user, SseEmitter emitter) {
+            this.adsId = adsId;
+            this.user = user;
+            this.emitter = emitter;
+        }
+
+        void offer(Message message) {
+            if (closed) {
+                return;
+            }
+            if (!buffer.offer(message)) {
+                evicted.increment();
+                close();
+                return;
+            }
+            schedule();
+        }
+
+        /**
+         * Отключить подписчика. Эмиттер закрывает поток отправки: завершить его отсюда нельзя,
+         * монитор эмиттера держит зависшая отправка. Поэтому идущая отправка прерывается,
+         * а ее поток заменяется в пуле, пока потоков взамен не больше comments.stream.max-stalled-dispatchers
+         */
+        void close() {
+            closed = true;
+            remove(this);
+            buffer.clear();
+            synchronized (this) {
+                if (sender != null) {
+                    if (!stalled) {
+                        stalled = addStalledDispatcher();
+                    }
+                    sender.interrupt();
+                }
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                dispatcher.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                sender = Thread.currentThread();
+            }
+            try {
+                Message message;
+                while (!closed && (message = buffer.poll()) != null) {
+                    sendStartedAt = System.nanoTime();
+                    emitter.send(message.toEvent());
+                    sendStartedAt = 0;
+                }
+                if (closed && !finished) {
+                    finished = true;
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // клиент отключился, эмиттер уже завершен или отправку прервали
+                closed = true;
+                finished = true;
+                remove(this);
+                emitter.completeWithError(e);
+            } finally {
+                sendStartedAt = 0;
+                synchronized (this) {
+                    sender = null;
+                    if (stalled) {
+                        stalled = false;
+                        releaseStalledDispatcher();
+                    }
+                }
+                scheduled.set(false);
+            }
+            // close() мог прийти после проверки closed выше, но до сброса scheduled: тогда эмиттер завершится здесь
+            if (closed ? !finished : !buffer.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.skypro.homework.service.impl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.service.ImageStorage;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Хранение картинок в колонке image.data, как раньше
+ */
+@Component
+@ConditionalOnProperty(name = "image.storage.type", havingValue = "db", matchIfMissing = true)
+public class DatabaseImageStorage implements ImageStorage {
+
+    private final ImageRepository imageRepository;
+
+    public DatabaseImageStorage(ImageRepository imageRepository) {
+        this.imageRepository = imageRepository;
+    }
+
+    @Override
+    public void store(ImageEntity image, byte[] data) {
+        image.setData(data);
+    }
+
+    /**
+     * Колонка data заполняется целиком, поэтому картинка читается в память
+     */
+    @Override
+    public void store(ImageEntity image, Path content) throws IOException {
+        image.setData(Files.readAllBytes(content));
+    }
+
+    /**
+     * Картинки для отдачи читаются без содержимого, оно читается отдельным запросом только здесь, целиком:
+     * bytea драйвер PostgreSQL все равно читает в память
+     */
+    @Override
+    public Resource load(ImageEntity image) throws IOException {
+        byte[] data = image.getData() != null ? image.getData() : imageRepository.findDataById(image.getId());
+        if (data == null) {
+            throw new FileNotFoundException("Нет содержимого картинки " + image.getId());
+        }
+        return new ByteArrayResource(data);
+    }
+
+    @Override
+    public void delete(ImageEntity image) {
+        // данные удаляются вместе со строкой image
+    }
+}
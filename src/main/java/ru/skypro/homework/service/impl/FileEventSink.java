@@ -0,0 +1,59 @@
+package ru.skypro.homework.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.dto.DomainEvent;
+import ru.skypro.homework.service.EventSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Получатель событий, дописывающий их в файл outbox.sink.path в формате NDJSON.
+ * <br> Пачка пишется одним вызовом и сбрасывается на диск до коммита публикации.
+ * После сбоя между записью и коммитом пачка допишется повторно, читатель пропускает позиции,
+ * которые уже обработал
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.sink.type", havingValue = "file")
+public class FileEventSink implements EventSink {
+
+    private final Path file;
+
+    private final ObjectMapper objectMapper;
+
+    public FileEventSink(@Value("${outbox.sink.path:events/events.ndjson}") String file,
+                         ObjectMapper objectMapper) {
+        this.file = Paths.get(file).toAbsolutePath();
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized void publish(List<DomainEvent> events) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (DomainEvent event : events) {
+            objectMapper.writeValue(lines, event);
+            lines.write('\n');
+        }
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file, CREATE, WRITE, APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package ru.skypro.homework.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.service.ImageStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Хранение картинок в файловой системе по хешу содержимого.
+ * <br> Файл лежит в {root}/{hash[0..2]}/{hash[2..4]}/{hash}, одинаковые картинки хранятся один раз.
+ * <br> Файл удаляется, только если на хеш не ссылается ни одна картинка в базе и файл не записывался дольше
+ * image.gc.grace-period. Запись хеша, файл которого уже есть, обновляет время изменения файла: транзакция,
+ * которая записала файл, но еще не закоммитила свою строку, не видна в базе, зато видна по времени файла.
+ * Защита не держит состояния в памяти, поэтому каталог image.storage.path может быть общим для нескольких
+ * экземпляров приложения. Транзакция записи картинки должна укладываться в image.gc.grace-period.
+ * <br> Молодые файлы, которые delete оставил, дочищает {@link #deleteUnreferenced(Instant)}
+ */
+@Component
+@ConditionalOnProperty(name = "image.storage.type", havingValue = "fs")
+public class FileSystemImageStorage implements ImageStorage {
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final String DELETING_SUFFIX = ".deleting";
+
+    /**
+     * Сколько хешей проверять в базе одним запросом при дочистке
+     */
+    private static final int HASH_BATCH = 500;
+
+    private final Path root;
+
+    private final ImageRepository imageRepository;
+
+    private final Duration gracePeriod;
+
+    public FileSystemImageStorage(@Value("${image.storage.path:images}") String root,
+                                  ImageRepository imageRepository,
+                                  @Value("${image.gc.grace-period:PT1H}") Duration gracePeriod) {
+        this.root = Paths.get(root).toAbsolutePath();
+        this.imageRepository = imageRepository;
+        this.gracePeriod = gracePeriod;
+    }
+
+    @Override
+    public void store(ImageEntity image, byte[] data) throws IOException {
+        Path file = path(image.getHash());
+        if (touch(file)) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), image.getHash(), TMP_SUFFIX);
+        try {
+            Files.write(tmp, data);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public void store(ImageEntity image, Path content) throws IOException {
+        Path file = path(image.getHash());
+        if (touch(file)) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path tmp = Files.createTempFile(file.getParent(), image.getHash(), TMP_SUFFIX);
+        try {
+            // временный файл может лежать на другом диске, поэтому сначала переносим его рядом с целевым
+            Files.move(content, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public Resource load(ImageEntity image) {
+        if (image.getData() != null) { // картинка еще не перенесена из БД
+            return new ByteArrayResource(image.getData());
+        }
+        if (image.getHash() == null || !Files.exists(path(image.getHash()))) {
+            // картинка для отдачи читается без содержимого: еще не перенесенная лежит в БД
+            byte[] data = imageRepository.findDataById(image.getId());
+            if (data != null) {
+                return new ByteArrayResource(data);
+            }
+        }
+        return new FileSystemResource(path(image.getHash()));
+    }
+
+    @Override
+    public void delete(ImageEntity image) throws IOException {
+        if (image.getHash() == null || imageRepository.existsByHash(image.getHash())) {
+            return;
+        }
+        deleteIfUnchanged(path(image.getHash()), Instant.now().minus(gracePeriod));
+    }
+
+    /**
+     * Обход каталога: удаляются файлы без ссылок в базе, не записывавшиеся с before,
+     * и остатки прерванных записей и удалений
+     */
+    @Override
+    public int deleteUnreferenced(Instant before) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        int deleted = 0;
+        Map<String, Path> candidates = new HashMap<>();
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TMP_SUFFIX) || name.endsWith(DELETING_SUFFIX)) {
+                    deleted += isOlder(file, before) && Files.deleteIfExists(file) ? 1 : 0;
+                } else if (isOlder(file, before)) {
+                    candidates.put(name, file);
+                    if (candidates.size() == HASH_BATCH) {
+                        deleted += deleteUnreferenced(candidates, before);
+                        candidates.clear();
+                    }
+                }
+            }
+        }
+        if (!candidates.isEmpty()) {
+            deleted += deleteUnreferenced(candidates, before);
+        }
+        return deleted;
+    }
+
+    private int deleteUnreferenced(Map<String, Path> candidates, Instant before) throws IOException {
+        imageRepository.findHashesIn(candidates.keySet()).forEach(candidates::remove);
+        int deleted = 0;
+        for (Path file : candidates.values()) {
+            deleted += deleteIfUnchanged(file, before) ? 1 : 0;
+        }
+        return deleted;
+    }
+
+    /**
+     * Удалить файл, если он не записывался с before.
+     * <br> Файл сначала переносится в сторону, и время проверяется еще раз: запись того же хеша до переноса
+     * обновила время, и файл возвращается на место, а запись после переноса не найдет файл и запишет его заново
+     */
+    private boolean deleteIfUnchanged(Path file, Instant before) throws IOException {
+        if (!isOlder(file, before)) {
+            return false;
+        }
+        Path deleting = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + DELETING_SUFFIX);
+        try {
+            Files.move(file, deleting, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (!isOlder(deleting, before)) {
+            Files.move(deleting, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return false;
+        }
+        Files.delete(deleting);
+        return true;
+    }
+
+    /**
+     * Отметить, что файл снова записан
+     *
+     * @return false, если файла нет и его нужно записать
+     */
+    private static boolean touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static boolean isOlder(Path file, Instant before) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(before);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private Path path(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+}
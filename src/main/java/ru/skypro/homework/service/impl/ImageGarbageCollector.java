@@ -0,0 +1,157 @@
+package ru.skypro.homework.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.service.ImageService;
+import ru.skypro.homework.service.ImageStorage;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Сборщик картинок, на которые не ссылаются ни объявления, ни пользователи.
+ * <br> Проходит таблицу image по id пачками по image.gc.batch-size, каждая пачка удаляется в своей транзакции,
+ * скорость ограничена image.gc.max-per-second картинками в секунду, чтобы не нагружать базу и хранилище.
+ * Картинки моложе image.gc.grace-period не трогаются. После прохода по таблице хранилище дочищает содержимое
+ * без ссылок, которое не записывалось дольше того же срока. При image.gc.dry-run=true только считает,
+ * что было бы удалено
+ */
+@Slf4j
+@Component
+public class ImageGarbageCollector {
+
+    private final ImageRepository imageRepository;
+
+    private final ImageService imageService;
+
+    private final ImageStorage imageStorage;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    private final int maxPerSecond;
+
+    private final Duration gracePeriod;
+
+    private final boolean dryRun;
+
+    /**
+     * Удаленные картинки вместе с уменьшенными копиями, при dry-run - найденные исходные картинки
+     */
+    private final Counter images;
+
+    /**
+     * Освобожденные байты, при dry-run - размер найденных исходных картинок
+     */
+    private final Counter bytes;
+
+    public ImageGarbageCollector(ImageRepository imageRepository,
+                                 ImageService imageService,
+                                 ImageStorage imageStorage,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${image.gc.batch-size:100}") int batchSize,
+                                 @Value("${image.gc.max-per-second:50}") int maxPerSecond,
+                                 @Value("${image.gc.grace-period:PT1H}") Duration gracePeriod,
+                                 @Value("${image.gc.dry-run:false}") boolean dryRun,
+                                 MeterRegistry meterRegistry) {
+        this.imageRepository = imageRepository;
+        this.imageService = imageService;
+        this.imageStorage = imageStorage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxPerSecond = maxPerSecond;
+        this.gracePeriod = gracePeriod;
+        this.dryRun = dryRun;
+        String mode = String.valueOf(dryRun);
+        this.images = Counter.builder("image.gc.images")
+                .tag("dry-run", mode)
+                .register(meterRegistry);
+        this.bytes = Counter.builder("image.gc.bytes")
+                .baseUnit("bytes")
+                .tag("dry-run", mode)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${image.gc.interval:3600000}", initialDelayString = "${image.gc.initial-delay:60000}")
+    public void collect() {
+        try {
+            collect(LocalDateTime.now().minus(gracePeriod));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ошибка сборки неиспользуемых картинок, повтор при следующем запуске", e);
+        }
+    }
+
+    /**
+     * Один проход по таблице image
+     *
+     * @param before удаляются только картинки, загруженные раньше
+     * @return количество удаленных (при dry-run - найденных) исходных картинок
+     */
+    public int collect(LocalDateTime before) throws InterruptedException, IOException {
+        int total = 0;
+        int after = 0;
+        List<ImageEntity> batch;
+        do {
+            long started = System.nanoTime();
+            batch = imageRepository.findOrphans(after, before, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            after = batch.get(batch.size() - 1).getId();
+            total += dryRun ? count(batch) : delete(batch);
+            throttle(started, batch.size());
+        } while (batch.size() == batchSize);
+        int files = dryRun ? 0 : imageStorage.deleteUnreferenced(before.atZone(ZoneId.systemDefault()).toInstant());
+        log.info("Сборка картинок{}: {} картинок, {} объектов хранилища", dryRun ? " (dry-run)" : "", total, files);
+        return total;
+    }
+
+    private int count(List<ImageEntity> batch) {
+        record(batch);
+        return batch.size();
+    }
+
+    private int delete(List<ImageEntity> batch) {
+        List<Integer> ids = batch.stream().map(ImageEntity::getId).collect(Collectors.toList());
+        // ссылка могла появиться после выборки, deleteImages проверит ее еще раз в транзакции удаления
+        List<ImageEntity> deleted = transactionTemplate.execute(status -> imageService.deleteImages(ids));
+        if (deleted == null) {
+            return 0;
+        }
+        record(deleted);
+        return (int) deleted.stream().filter(image -> ids.contains(image.getId())).count();
+    }
+
+    private void record(List<ImageEntity> batch) {
+        images.increment(batch.size());
+        bytes.increment(batch.stream().mapToLong(image -> image.getFileSize() == null ? 0 : image.getFileSize()).sum());
+    }
+
+    /**
+     * Пауза, чтобы пачка из count картинок заняла не меньше count / maxPerSecond секунд
+     */
+    private void throttle(long started, int count) throws InterruptedException {
+        long minNanos = TimeUnit.SECONDS.toNanos(count) / maxPerSecond;
+        long remaining = minNanos - (System.nanoTime() - started);
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+}
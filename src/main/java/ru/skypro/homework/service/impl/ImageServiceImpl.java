@@ -1,39 +1,250 @@
 package ru.skypro.homework.service.impl;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.exception.ImageTooLargeException;
+import ru.skypro.homework.exception.ObjectAbsenceException;
 import ru.skypro.homework.repository.ImageRepository;
 import ru.skypro.homework.service.ImageService;
+import ru.skypro.homework.service.ImageStorage;
 
 import java.io.IOException;
-import java.util.Optional;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class ImageServiceImpl implements ImageService {
 
+    private static final int BUFFER_SIZE = 8192;
+
     private final ImageRepository imageRepository;
 
-    public ImageServiceImpl(ImageRepository imageRepository) {
+    private final ImageStorage imageStorage;
+
+    private final ImageVariantGenerator imageVariantGenerator;
+
+    /**
+     * Размеры загружаемых картинок в байтах
+     */
+    private final DistributionSummary uploadSize;
+
+    /**
+     * Предельный размер картинки, тот же, что у multipart-загрузки
+     */
+    private final long maxSize;
+
+    public ImageServiceImpl(ImageRepository imageRepository,
+                            ImageStorage imageStorage,
+                            ImageVariantGenerator imageVariantGenerator,
+                            MeterRegistry meterRegistry,
+                            @Value("${spring.servlet.multipart.max-file-size:1MB}") DataSize maxSize) {
+        this.maxSize = maxSize.toBytes();
         this.imageRepository = imageRepository;
+        this.imageStorage = imageStorage;
+        this.imageVariantGenerator = imageVariantGenerator;
+        this.uploadSize = DistributionSummary.builder("image.upload.size")
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
 
+    /**
+     * Картинка копируется из запроса во временный файл буфером {@link #BUFFER_SIZE} байт,
+     * хеш считается по ходу копирования, целиком в память она не читается.
+     * <br> К этому моменту Tomcat уже записал часть запроса на диск и отклонил ее, если она больше
+     * spring.servlet.multipart.max-file-size; проверка {@link #maxSize} здесь - для загрузок в обход разбора multipart
+     */
     @Override
     public ImageEntity downloadImage(MultipartFile image) throws IOException {
-        ImageEntity imageEntity = new ImageEntity();
-        imageEntity.setMediaType(image.getContentType());
-        imageEntity.setData(image.getBytes());
-        return imageRepository.save(imageEntity);
+        Path tmp = Files.createTempFile("image-upload", ".tmp");
+        try {
+            MessageDigest digest = sha256Digest();
+            long size;
+            try (InputStream in = new DigestInputStream(image.getInputStream(), digest);
+                 OutputStream out = Files.newOutputStream(tmp)) {
+                size = copy(in, out);
+            }
+            uploadSize.record(size);
+            ImageEntity imageEntity = newImage(toHex(digest.digest()), size, image.getContentType());
+            imageStorage.store(imageEntity, tmp);
+            imageRepository.save(imageEntity);
+            imageVariantGenerator.generateAfterCommit(imageEntity.getId());
+            return imageEntity;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
     }
 
     @Override
     public void deleteImage(Integer id) {
-        imageRepository.deleteById(id);
+        deleteImages(List.of(id));
+    }
+
+    /**
+     * Картинки, на которые еще ссылаются объявления или пользователи, пропускаются
+     * (импорт объявлений может указать одну картинку нескольким объявлениям).
+     * Строки удаляются в текущей транзакции без чтения содержимого, файлы из хранилища - только после ее коммита
+     */
+    @Override
+    public List<ImageEntity> deleteImages(Collection<Integer> ids) {
+        Set<Integer> originalIds = new HashSet<>(imageRepository.findUnreferencedIds(ids));
+        if (originalIds.isEmpty()) {
+            return List.of();
+        }
+        List<ImageEntity> images = imageRepository.findWithVariantsByIdIn(originalIds);
+        // сначала копии: они ссылаются на исходные картинки
+        imageRepository.deleteAllByIdInBatch(images.stream()
+                .map(ImageEntity::getId)
+                .filter(id -> !originalIds.contains(id))
+                .collect(Collectors.toList()));
+        imageRepository.deleteAllByIdInBatch(originalIds);
+        deleteContentAfterCommit(images);
+        return images;
     }
 
     @Override
     public byte[] getImage(Integer id) {
-        Optional<ImageEntity> imageEntity = imageRepository.findById(id);
-        return imageEntity.orElseThrow().getData(); // TODO сделать свое исключение
+        ImageEntity imageEntity = imageRepository.findById(id)
+                .orElseThrow(() -> new ObjectAbsenceException("Картинка не найдена"));
+        try {
+            return StreamUtils.copyToByteArray(getImageContent(imageEntity).getInputStream());
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при чтении фото", e);
+        }
+    }
+
+    @Override
+    public ImageEntity getAdsImage(Integer adsId) {
+        return imageRepository.findByAdsId(adsId)
+                .orElseThrow(() -> new ObjectAbsenceException("Картинка объявления не найдена"));
+    }
+
+    @Override
+    public ImageEntity getUserImage(Integer userId) {
+        return imageRepository.findByUserId(userId)
+                .orElseThrow(() -> new ObjectAbsenceException("Картинка пользователя не найдена"));
+    }
+
+    @Override
+    public Resource getImageContent(ImageEntity image) {
+        try {
+            return imageStorage.load(image);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при чтении фото", e);
+        }
+    }
+
+    @Override
+    public ImageEntity getVariant(ImageEntity image, Integer width) {
+        if (width == null) {
+            return image;
+        }
+        return imageRepository.findVariants(image.getId(), width, PageRequest.of(0, 1)).stream()
+                .findFirst()
+                .orElse(image);
+    }
+
+    private void deleteContentAfterCommit(List<ImageEntity> images) {
+        Runnable deleteContent = () -> {
+            for (ImageEntity image : images) {
+                try {
+                    imageStorage.delete(image);
+                } catch (IOException e) {
+                    log.warn("Ошибка при удалении фото {}", image.getId(), e);
+                }
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteContent.run();
+            return;
+        }
+        // при откате строки вернутся, поэтому файлы до коммита не трогаем
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteContent.run();
+            }
+        });
+    }
+
+    /**
+     * Новая картинка с заполненными метаданными, содержимое еще не сохранено
+     */
+    static ImageEntity newImage(byte[] data, String mediaType) {
+        return newImage(sha256(data), data.length, mediaType);
+    }
+
+    static ImageEntity newImage(String hash, long size, String mediaType) {
+        ImageEntity imageEntity = new ImageEntity();
+        imageEntity.setMediaType(mediaType);
+        imageEntity.setHash(hash);
+        imageEntity.setFileSize(size);
+        imageEntity.setCreatedAt(LocalDateTime.now());
+        return imageEntity;
+    }
+
+    /**
+     * Копирование с проверкой предельного размера
+     *
+     * @return количество скопированных байт
+     * @throws ImageTooLargeException если картинка больше {@link #maxSize}
+     */
+    private long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            size += read;
+            if (size > maxSize) {
+                throw new ImageTooLargeException("Картинка больше " + maxSize + " байт");
+            }
+            out.write(buffer, 0, read);
+        }
+        return size;
+    }
+
+    /**
+     * SHA-256 содержимого в hex
+     */
+    static String sha256(byte[] data) {
+        return toHex(sha256Digest().digest(data));
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] digest) {
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
     }
 }
@@ -0,0 +1,76 @@
+package ru.skypro.homework.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.service.ImageStorage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Перенос картинок из колонки image.data в файловое хранилище.
+ * <br> Включается свойствами image.storage.type=fs и image.storage.migrate=true,
+ * выполняется при старте приложения пачками по image.storage.migration.batch-size строк,
+ * каждая пачка в своей транзакции. Повторный запуск продолжает с оставшихся строк
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${image.storage.type:db}' == 'fs' and ${image.storage.migrate:false}")
+public class ImageStorageMigration implements ApplicationRunner {
+
+    private final ImageRepository imageRepository;
+
+    private final ImageStorage imageStorage;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    public ImageStorageMigration(ImageRepository imageRepository,
+                                 ImageStorage imageStorage,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${image.storage.migration.batch-size:100}") int batchSize) {
+        this.imageRepository = imageRepository;
+        this.imageStorage = imageStorage;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int total = 0;
+        Integer moved;
+        while ((moved = transactionTemplate.execute(status -> migrateBatch())) != null && moved > 0) {
+            total += moved;
+            log.info("Перенесено картинок в файловое хранилище: {}", total);
+        }
+    }
+
+    private int migrateBatch() {
+        List<Integer> ids = imageRepository.findIdsWithData(PageRequest.of(0, batchSize));
+        for (ImageEntity image : imageRepository.findAllById(ids)) {
+            byte[] data = image.getData();
+            if (image.getHash() == null) {
+                image.setHash(ImageServiceImpl.sha256(data));
+            }
+            if (image.getFileSize() == null) {
+                image.setFileSize((long) data.length);
+            }
+            image.setData(null);
+            try {
+                imageStorage.store(image, data);
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка при переносе фото " + image.getId(), e);
+            }
+        }
+        return ids.size();
+    }
+}
@@ -0,0 +1,69 @@
+package ru.skypro.homework.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.exception.UploadRejectedException;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул для сохранения загруженных картинок вне потока Tomcat.
+ * <br> image.upload.workers потоков и очередь на image.upload.queue-capacity загрузок.
+ * При переполнении очереди загрузка отклоняется с 503, чтобы не копить файлы и потоки
+ */
+@Component
+public class ImageUploadExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    public ImageUploadExecutor(@Value("${image.upload.workers:4}") int workers,
+                               @Value("${image.upload.queue-capacity:50}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-upload-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Выполнить загрузку в пуле
+     *
+     * @param upload сохранение картинки и связанных с ней данных
+     * @return результат загрузки
+     * @throws UploadRejectedException если очередь переполнена
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> upload) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            // контекст безопасности нужен в потоке загрузки для выбора базы (ReplicaRoutingDataSource)
+            executor.execute(DelegatingSecurityContextRunnable.create(() -> {
+                try {
+                    result.complete(upload.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }, null));
+        } catch (RejectedExecutionException e) {
+            throw new UploadRejectedException("Слишком много загрузок, повторите позже");
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
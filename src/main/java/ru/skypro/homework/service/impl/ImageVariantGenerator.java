@@ -0,0 +1,195 @@
+package ru.skypro.homework.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.service.ImageStorage;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Генерация уменьшенных копий загруженных картинок.
+ * <br> Копии шириной image.variants.widths строятся в JPEG после коммита загрузки
+ * пулом из image.variants.workers потоков. Очередь ограничена image.variants.queue-capacity:
+ * при переполнении поток, загрузивший картинку, ждет места в очереди до image.variants.enqueue-timeout,
+ * и новые загрузки замедляются; не дождавшись, задача отбрасывается.
+ * Пока копии нет, по ссылке с шириной отдается исходная картинка
+ */
+@Slf4j
+@Component
+public class ImageVariantGenerator {
+
+    private static final String VARIANT_MEDIA_TYPE = "image/jpeg";
+
+    private final ImageRepository imageRepository;
+
+    private final ImageStorage imageStorage;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final List<Integer> widths;
+
+    private final float quality;
+
+    private final ThreadPoolExecutor executor;
+
+    public ImageVariantGenerator(ImageRepository imageRepository,
+                                 ImageStorage imageStorage,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${image.variants.widths:160,320,640}") List<Integer> widths,
+                                 @Value("${image.variants.quality:0.8}") float quality,
+                                 @Value("${image.variants.workers:2}") int workers,
+                                 @Value("${image.variants.queue-capacity:100}") int queueCapacity,
+                                 @Value("${image.variants.enqueue-timeout:PT5S}") Duration enqueueTimeout) {
+        this.imageRepository = imageRepository;
+        this.imageStorage = imageStorage;
+        // своя транзакция, даже если генерацию вызвали внутри чужой
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.widths = widths;
+        this.quality = quality;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                waitForSpace(enqueueTimeout));
+    }
+
+    /**
+     * При полной очереди ждать места, а не строить копии в вызывающем потоке: он вызывается из afterCommit,
+     * где синхронизации закоммиченной транзакции еще активны и новая транзакция к ней присоединилась бы
+     */
+    private static RejectedExecutionHandler waitForSpace(Duration timeout) {
+        return (task, executor) -> {
+            try {
+                if (!executor.isShutdown() && executor.getQueue().offer(task, timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            log.warn("Очередь построения копий картинок переполнена, копии не построены");
+        };
+    }
+
+    /**
+     * Поставить в очередь построение копий картинки после коммита текущей транзакции
+     *
+     * @param imageId идентификатор исходной картинки
+     */
+    public void generateAfterCommit(Integer imageId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            executor.execute(() -> generate(imageId));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                executor.execute(() -> generate(imageId));
+            }
+        });
+    }
+
+    /**
+     * Построить недостающие копии картинки
+     */
+    void generate(Integer imageId) {
+        try {
+            ImageEntity original = imageRepository.findById(imageId).orElse(null);
+            if (original == null) {
+                return;
+            }
+            BufferedImage source;
+            try (InputStream in = imageStorage.load(original).getInputStream()) {
+                source = ImageIO.read(in);
+            }
+            if (source == null) { // формат не поддерживается ImageIO
+                return;
+            }
+            List<ImageEntity> existing = imageRepository.findByOriginalId(imageId);
+            for (Integer width : widths) {
+                if (width >= source.getWidth() || existing.stream().anyMatch(v -> width.equals(v.getWidth()))) {
+                    continue;
+                }
+                byte[] data = encode(resize(source, width));
+                ImageEntity variant = ImageServiceImpl.newImage(data, VARIANT_MEDIA_TYPE);
+                variant.setOriginal(original);
+                variant.setWidth(width);
+                // файл и строка в одной транзакции: до коммита файл защищает срок ожидания хранилища
+                transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        imageStorage.store(variant, data);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    imageRepository.save(variant);
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось построить копии картинки {}", imageId, e);
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width) {
+        int height = Math.max(1, Math.round((float) source.getHeight() * width / source.getWidth()));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,54 @@
+package ru.skypro.homework.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.skypro.homework.dto.DomainEvent;
+import ru.skypro.homework.service.EventSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Получатель событий в памяти процесса, для тестов и локального запуска.
+ * <br> Хранит последние outbox.sink.capacity событий
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.sink.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryEventSink implements EventSink {
+
+    private final Deque<DomainEvent> events = new ArrayDeque<>();
+
+    private final int capacity;
+
+    public InMemoryEventSink(@Value("${outbox.sink.capacity:10000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void publish(List<DomainEvent> batch) {
+        for (DomainEvent event : batch) {
+            if (events.size() == capacity) {
+                events.removeFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    /**
+     * События после позиции
+     *
+     * @param after позиция последнего обработанного события, 0 - с начала
+     */
+    public synchronized List<DomainEvent> getEvents(long after) {
+        List<DomainEvent> result = new ArrayList<>();
+        for (DomainEvent event : events) {
+            if (event.getPosition() > after) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+}
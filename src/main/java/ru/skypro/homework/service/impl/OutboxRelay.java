@@ -0,0 +1,119 @@
+package ru.skypro.homework.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.entity.OutboxEventEntity;
+import ru.skypro.homework.mapper.OutboxEventMapper;
+import ru.skypro.homework.repository.OutboxEventRepository;
+import ru.skypro.homework.service.EventSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Публикация событий outbox в {@link EventSink} пачками по outbox.relay.batch-size.
+ * <br> Неопубликованные события блокируются (SELECT ... FOR UPDATE), получают следующие позиции потока
+ * и уходят в получатель в той же транзакции. Поэтому позиции идут без пропусков, даже если транзакции
+ * с событиями завершились не в порядке id, а второй экземпляр приложения ждет блокировку, а не публикует повторно
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final OutboxEventMapper outboxEventMapper;
+
+    private final EventSink eventSink;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    /**
+     * Сколько хранить опубликованные события для чтения по позиции
+     */
+    private final Duration retention;
+
+    private final Counter published;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OutboxEventMapper outboxEventMapper,
+                       EventSink eventSink,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${outbox.retention:P7D}") Duration retention,
+                       MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxEventMapper = outboxEventMapper;
+        this.eventSink = eventSink;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.retention = retention;
+        this.published = Counter.builder("outbox.published")
+                .description("Опубликованные события outbox")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Опубликовать все накопившиеся события; при ошибке пачка останется неопубликованной до следующего запуска
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.interval:1000}")
+    public void relay() {
+        try {
+            int count;
+            do {
+                count = publishBatch();
+            } while (count == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Ошибка публикации событий outbox, повтор при следующем запуске", e);
+        }
+    }
+
+    /**
+     * Опубликовать одну пачку событий
+     *
+     * @return количество опубликованных событий
+     */
+    public int publishBatch() {
+        Integer count = transactionTemplate.execute(status -> {
+            List<OutboxEventEntity> batch = outboxEventRepository.findUnpublished(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            long position = outboxEventRepository.maxPosition();
+            for (OutboxEventEntity event : batch) {
+                event.setPosition(++position);
+            }
+            outboxEventRepository.saveAllAndFlush(batch);
+            try {
+                eventSink.publish(outboxEventMapper.toDtoList(batch));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return batch.size();
+        });
+        published.increment(count == null ? 0 : count);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Удалить опубликованные события старше {@link #retention}
+     */
+    @Scheduled(fixedDelayString = "${outbox.cleanup.interval:3600000}")
+    public void cleanup() {
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxEventRepository.deletePublishedBefore(LocalDateTime.now().minus(retention)));
+        log.debug("Удалено опубликованных событий outbox: {}", deleted);
+    }
+}
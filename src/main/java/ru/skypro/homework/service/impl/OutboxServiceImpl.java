@@ -0,0 +1,59 @@
+package ru.skypro.homework.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.skypro.homework.dto.DomainEvent;
+import ru.skypro.homework.dto.DomainEventType;
+import ru.skypro.homework.entity.OutboxEventEntity;
+import ru.skypro.homework.mapper.OutboxEventMapper;
+import ru.skypro.homework.repository.OutboxEventRepository;
+import ru.skypro.homework.service.OutboxService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Сервис OutboxServiceImpl
+ * Запись событий в таблицу outbox_event и чтение опубликованных событий
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxServiceImpl implements OutboxService {
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final OutboxEventMapper outboxEventMapper;
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(DomainEventType type, Integer adsId, Object payload) {
+        OutboxEventEntity event = new OutboxEventEntity();
+        event.setType(type);
+        event.setAdsId(adsId);
+        event.setCreatedAt(LocalDateTime.now());
+        try {
+            event.setPayload(payload == null ? null : objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Ошибка при записи события " + type, e);
+        }
+        outboxEventRepository.save(event);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DomainEvent> getEvents(long after, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        return outboxEventMapper.toDtoList(outboxEventRepository.findPublishedAfter(after, PageRequest.of(0, pageSize)));
+    }
+}
@@ -0,0 +1,143 @@
+package ru.skypro.homework.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.DomainEventType;
+import ru.skypro.homework.dto.PopularBy;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.mapper.AdsMapper;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.CommentRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Популярные объявления за последние ads.popular.window (по умолчанию сутки) для GET /ads/popular.
+ * <br> Просмотры и новые комментарии считаются в памяти по корзинам ads.popular.bucket ({@link SlidingWindowCounter}).
+ * Раз в ads.popular.refresh-interval мс выбираются ads.popular.size лучших объявлений, и их карточки
+ * сохраняются готовым списком, так что запрос не обращается к базе.
+ * <br> При запуске счетчики комментариев восстанавливаются из таблицы comment.
+ * Отдельные просмотры в базе не хранятся, поэтому окно просмотров после перезапуска начинается заново
+ */
+@Slf4j
+@Component
+public class PopularAdsTracker {
+
+    private final AdsRepository adsRepository;
+
+    private final CommentRepository commentRepository;
+
+    private final AdsMapper adsMapper;
+
+    private final Duration window;
+
+    private final int size;
+
+    private final Map<PopularBy, SlidingWindowCounter> counters = new EnumMap<>(PopularBy.class);
+
+    private volatile Map<PopularBy, List<Ads>> popular = Map.of();
+
+    public PopularAdsTracker(AdsRepository adsRepository,
+                             CommentRepository commentRepository,
+                             AdsMapper adsMapper,
+                             @Value("${ads.popular.window:PT24H}") Duration window,
+                             @Value("${ads.popular.bucket:PT1H}") Duration bucket,
+                             @Value("${ads.popular.size:50}") int size) {
+        this.adsRepository = adsRepository;
+        this.commentRepository = commentRepository;
+        this.adsMapper = adsMapper;
+        this.window = window;
+        this.size = size;
+        int bucketCount = (int) Math.max(window.toMillis() / bucket.toMillis(), 1);
+        for (PopularBy by : PopularBy.values()) {
+            counters.put(by, new SlidingWindowCounter(bucket.toMillis(), bucketCount));
+        }
+    }
+
+    /**
+     * Популярные объявления по убыванию просмотров или комментариев
+     *
+     * @param limit сколько вернуть, не больше ads.popular.size
+     */
+    public List<Ads> getPopular(PopularBy by, int limit) {
+        List<Ads> ads = popular.getOrDefault(by, List.of());
+        return ads.subList(0, Math.min(Math.max(limit, 0), ads.size()));
+    }
+
+    public void viewed(Integer adsId) {
+        counters.get(PopularBy.VIEWS).add(adsId, System.currentTimeMillis(), 1);
+    }
+
+    /**
+     * Новый комментарий учитывается после коммита
+     */
+    @TransactionalEventListener
+    public void onCommentChanged(CommentChangedEvent event) {
+        if (event.getType() == DomainEventType.COMMENT_CREATED) {
+            counters.get(PopularBy.COMMENTS).add(event.getAdsId(), System.currentTimeMillis(), 1);
+        }
+    }
+
+    /**
+     * Восстановить счетчики комментариев за окно из базы и пересчитать список
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        SlidingWindowCounter comments = counters.get(PopularBy.COMMENTS);
+        comments.clear();
+        ZoneId zone = ZoneId.systemDefault();
+        List<Object[]> rows = commentRepository.findAdIdAndCreatedAtSince(LocalDateTime.now().minus(window));
+        for (Object[] row : rows) {
+            comments.add((Integer) row[0], ((LocalDateTime) row[1]).atZone(zone).toInstant().toEpochMilli(), 1);
+        }
+        log.info("Популярные объявления восстановлены по {} комментариям", rows.size());
+        refresh();
+    }
+
+    /**
+     * Выбрать лучшие объявления и загрузить их карточки одним запросом на каждый порядок
+     */
+    @Scheduled(fixedDelayString = "${ads.popular.refresh-interval:10000}")
+    @Transactional(readOnly = true)
+    public void refresh() {
+        long now = System.currentTimeMillis();
+        Map<PopularBy, List<Ads>> result = new EnumMap<>(PopularBy.class);
+        counters.forEach((by, counter) -> result.put(by, load(counter.top(now, size))));
+        popular = result;
+    }
+
+    /**
+     * Карточки объявлений в порядке ids; удаленные объявления пропускаются
+     */
+    private List<Ads> load(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, AdsEntity> found = adsRepository.findActiveByIdIn(ids).stream()
+                .collect(Collectors.toMap(AdsEntity::getId, Function.identity()));
+        List<Ads> ads = new ArrayList<>(found.size());
+        for (Integer id : ids) {
+            AdsEntity adsEntity = found.get(id);
+            if (adsEntity != null) {
+                ads.add(adsMapper.toAdsDto(adsEntity));
+            }
+        }
+        return List.copyOf(ads);
+    }
+}
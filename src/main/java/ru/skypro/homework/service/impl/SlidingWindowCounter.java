@@ -0,0 +1,106 @@
+package ru.skypro.homework.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики по объявлениям в скользящем окне из нескольких корзин по времени.
+ * <br> Корзины лежат по кругу: корзина, время которой прошло, заменяется новой при первой записи в нее.
+ * Запись только увеличивает {@link LongAdder}, без блокировок; запись на границе корзин может потеряться
+ */
+class SlidingWindowCounter {
+
+    private static final Comparator<Map.Entry<Integer, Long>> BY_COUNT =
+            Map.Entry.<Integer, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+
+    private final long bucketMillis;
+
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * @param bucketMillis длительность корзины
+     * @param bucketCount  количество корзин в окне
+     */
+    SlidingWindowCounter(long bucketMillis, int bucketCount) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    /**
+     * Добавить amount к счетчику объявления в корзину момента at; записи старше окна пропускаются
+     */
+    void add(int adsId, long at, long amount) {
+        long index = at / bucketMillis;
+        int slot = (int) (index % buckets.length());
+        Bucket bucket = buckets.get(slot);
+        while (bucket == null || bucket.index < index) {
+            Bucket fresh = new Bucket(index);
+            if (buckets.compareAndSet(slot, bucket, fresh)) {
+                bucket = fresh;
+            } else {
+                bucket = buckets.get(slot);
+            }
+        }
+        if (bucket.index == index) {
+            bucket.counts.computeIfAbsent(adsId, id -> new LongAdder()).add(amount);
+        }
+    }
+
+    /**
+     * k объявлений с наибольшими счетчиками в окне, заканчивающемся в now, по убыванию счетчика.
+     * Суммы по корзинам отбираются кучей из k элементов
+     */
+    List<Integer> top(long now, int k) {
+        long last = now / bucketMillis;
+        long first = last - buckets.length() + 1;
+        Map<Integer, Long> totals = new HashMap<>();
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.index >= first && bucket.index <= last) {
+                bucket.counts.forEach((adsId, count) -> totals.merge(adsId, count.sum(), Long::sum));
+            }
+        }
+        PriorityQueue<Map.Entry<Integer, Long>> heap = new PriorityQueue<>(k + 1, BY_COUNT);
+        for (Map.Entry<Integer, Long> entry : totals.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        List<Integer> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(heap.poll().getKey());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    void clear() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, null);
+        }
+    }
+
+    private static final class Bucket {
+
+        /**
+         * Номер корзины от начала эпохи
+         */
+        final long index;
+
+        final ConcurrentMap<Integer, LongAdder> counts = new ConcurrentHashMap<>();
+
+        Bucket(long index) {
+            this.index = index;
+        }
+    }
+}
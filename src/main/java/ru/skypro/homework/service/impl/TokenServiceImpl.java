@@ -0,0 +1,158 @@
+package ru.skypro.homework.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.Transient;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import ru.skypro.homework.service.TokenService;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Подписанные токены доступа без хранения на сервере.
+ * <br> Токен - base64url(логин \n срок действия \n отпечаток пароля) . base64url(HMAC-SHA256).
+ * Отпечаток - HMAC от хеша пароля: после смены пароля он не совпадает, и выданные раньше токены не принимаются.
+ * Проверка токена - две HMAC и пользователь из кеша {@link UserDetailsServiceImpl}, без BCrypt;
+ * роли берутся из текущих данных пользователя. Кеш сбрасывается при смене пароля только на этом экземпляре,
+ * на остальных старые токены действуют до истечения записи кеша (auth.user-cache.ttl).
+ * <br> Ключ задается auth.token.secret (base64). Без ключа приложение не запускается,
+ * кроме профилей dev и cds-training: там ключ генерируется при старте, и токены не переживают перезапуск
+ */
+@Slf4j
+@Service
+public class TokenServiceImpl implements TokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Профили, в которых можно запускаться без auth.token.secret
+     */
+    private static final Profiles RANDOM_SECRET_PROFILES = Profiles.of("dev | cds-training");
+
+    /**
+     * Длина отпечатка пароля в байтах
+     */
+    private static final int PASSWORD_STAMP_LENGTH = 12;
+
+    private final SecretKeySpec key;
+
+    private final Duration ttl;
+
+    private final UserDetailsService userDetailsService;
+
+    public TokenServiceImpl(@Value("${auth.token.secret:}") String secret,
+                            @Value("${auth.token.ttl:PT1H}") Duration ttl,
+                            Environment environment,
+                            UserDetailsService userDetailsService) {
+        this.userDetailsService = userDetailsService;
+        byte[] keyBytes;
+        if (secret.isBlank()) {
+            if (!environment.acceptsProfiles(RANDOM_SECRET_PROFILES)) {
+                throw new IllegalStateException("auth.token.secret не задан: укажите ключ в base64 " +
+                        "(переменная окружения AUTH_TOKEN_SECRET) или запустите приложение с профилем dev");
+            }
+            log.warn("auth.token.secret не задан, токены не переживут перезапуск приложения");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = Base64.getDecoder().decode(secret);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttl = ttl;
+    }
+
+    @Override
+    public String createToken(UserDetails userDetails) {
+        long expiresAt = Instant.now().plus(ttl).getEpochSecond();
+        String payload = ENCODER.encodeToString((userDetails.getUsername() + "\n" + expiresAt + "\n"
+                + ENCODER.encodeToString(passwordStamp(userDetails))).getBytes(StandardCharsets.UTF_8));
+        return payload + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    @Override
+    public Optional<Authentication> verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+        String payload = token.substring(0, dot);
+        try {
+            if (!MessageDigest.isEqual(sign(payload), DECODER.decode(token.substring(dot + 1)))) {
+                return Optional.empty();
+            }
+            String[] parts = new String(DECODER.decode(payload), StandardCharsets.UTF_8).split("\n", -1);
+            if (parts.length != 3 || Long.parseLong(parts[1]) < Instant.now().getEpochSecond()) {
+                return Optional.empty();
+            }
+            UserDetails userDetails = userDetailsService.loadUserByUsername(parts[0]);
+            if (!MessageDigest.isEqual(passwordStamp(userDetails), DECODER.decode(parts[2]))) {
+                return Optional.empty(); // пароль сменился после выдачи токена
+            }
+            return Optional.of(new TokenAuthentication(userDetails.getUsername(), userDetails.getAuthorities()));
+        } catch (UsernameNotFoundException e) { // пользователь удален
+            return Optional.empty();
+        } catch (IllegalArgumentException e) { // битый base64 или срок действия
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Аутентификация по токену, не сохраняется в HTTP-сессии
+     */
+    @Transient
+    private static final class TokenAuthentication extends UsernamePasswordAuthenticationToken {
+
+        private TokenAuthentication(String username, Collection<? extends GrantedAuthority> authorities) {
+            super(username, null, authorities);
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return hmac(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Отпечаток хеша пароля: меняется при смене пароля и не раскрывает сам хеш
+     */
+    private byte[] passwordStamp(UserDetails userDetails) {
+        String password = userDetails.getPassword() == null ? "" : userDetails.getPassword();
+        return Arrays.copyOf(hmac(("password\n" + password).getBytes(StandardCharsets.UTF_8)), PASSWORD_STAMP_LENGTH);
+    }
+
+    private byte[] hmac(byte[] data) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
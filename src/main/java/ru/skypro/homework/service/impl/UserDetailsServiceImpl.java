@@ -0,0 +1,88 @@
+package ru.skypro.homework.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.Role;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Загрузка пользователей для Spring Security из таблицы users.
+ * <br> Загруженные пользователи держатся в ограниченном кеше (auth.user-cache.*),
+ * после смены пароля запись сбрасывается.
+ * Транзакция открывается только при промахе кеша: фильтр токенов вызывает сервис на каждый запрос
+ */
+@Service
+public class UserDetailsServiceImpl implements UserDetailsService {
+
+    private final UserRepository userRepository;
+
+    private final Cache<String, UserDetails> cache;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${auth.user-cache.maximum-size:10000}") long maximumSize,
+                                  @Value("${auth.user-cache.ttl:PT10M}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // не только для чтения: учетные данные читаются из основной базы,
+        // реплика может не знать нового пользователя или пароль
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserDetails userDetails = cache.get(username.toLowerCase(Locale.ROOT), key -> transactionTemplate.execute(status ->
+                userRepository.findByEmailIgnoreCase(key).map(UserDetailsServiceImpl::toUserDetails).orElse(null)));
+        if (userDetails == null) {
+            throw new UsernameNotFoundException(username);
+        }
+        // Spring Security стирает пароль у вернувшегося объекта после входа, поэтому отдается копия
+        return User.withUserDetails(userDetails).build();
+    }
+
+    /**
+     * Сбросить пользователя из кеша после коммита текущей транзакции
+     *
+     * @param username логин пользователя
+     */
+    public void evictAfterCommit(String username) {
+        String key = username.toLowerCase(Locale.ROOT);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.invalidate(key);
+            }
+        });
+    }
+
+    private static UserDetails toUserDetails(UserEntity userEntity) {
+        return User.withUsername(userEntity.getEmail())
+                .password(userEntity.getPassword() == null ? "" : userEntity.getPassword())
+                .roles((userEntity.getRole() == null ? Role.USER : userEntity.getRole()).name())
+                .build();
+    }
+}
@@ -4,10 +4,15 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import ru.skypro.homework.CacheConfig;
 import ru.skypro.homework.dto.NewPassword;
 import ru.skypro.homework.dto.User;
 import ru.skypro.homework.entity.ImageEntity;
@@ -43,6 +48,15 @@ public class UserServiceImpl implements UserService {
 
     private final ImageServiceImpl imageService;
 
+    private final UserDetailsServiceImpl userDetailsService;
+
+    private final PasswordEncoder passwordEncoder;
+
+    /**
+     * Версии списков для ETag
+     */
+    private final CollectionVersions collectionVersions;
+
     /**
      * Конструктор - создание нового объекта репозитория
      *
@@ -66,11 +80,11 @@ public class UserServiceImpl implements UserService {
      */
     @Override
     public void setNewPassword(NewPassword newPassword, Authentication authentication) {
-        logger.info("Вызван метод обновления пароля пользователя");
+        logger.debug("Вызван метод обновления пароля пользователя");
         UserEntity userEntity = userRepository.findByEmailIgnoreCase(authentication.getName()).orElseThrow();
-        userEntity.setPassword(newPassword.getNewPassword());
+        userEntity.setPassword(passwordEncoder.encode(newPassword.getNewPassword()));
         userRepository.save(userEntity);
-        userMapper.toDto(userEntity);
+        userDetailsService.evictAfterCommit(userEntity.getEmail());
     }
 
     /**
@@ -80,8 +94,10 @@ public class UserServiceImpl implements UserService {
      * @return информацию об авторизованном пользователе
      */
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.USERS_CACHE, key = "#authentication.name")
     public User getUser(Authentication authentication) {
-        logger.info("Вызван метод получения информации об авторизованном пользователе");
+        logger.debug("Вызван метод получения информации об авторизованном пользователе");
         return userMapper.toDto(userRepository.getUserEntitiesByEmail(authentication.getName()));
     }
 
@@ -93,13 +109,18 @@ public class UserServiceImpl implements UserService {
      * @return обновленную информацию об авторизованном пользователе
      */
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = "#authentication.name"),
+            @CacheEvict(cacheNames = CacheConfig.ADS_CACHE, allEntries = true) // имя и телефон автора есть в FullAds
+    })
     public User updateUser(User user, Authentication authentication) {
-        logger.info("Вызван метод обновления информации об авторизованном пользователе");
+        logger.debug("Вызван метод обновления информации об авторизованном пользователе");
         UserEntity userEntity = userRepository.findByEmailIgnoreCase(authentication.getName()).orElseThrow();//TODO надо сделать исключение
         userEntity.setFirstName(user.getFirstName());
         userEntity.setLastName(user.getLastName());
         userEntity.setPhone(user.getPhone());
         userRepository.save(userEntity);
+        collectionVersions.allCommentsChanged(); // имя автора есть в комментариях
         return userMapper.toDto(userEntity);
     }
 
@@ -110,11 +131,16 @@ public class UserServiceImpl implements UserService {
      * @param authentication авторизованный пользователь
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = "#authentication.name")
     public void updateUserImage(MultipartFile image, Authentication authentication) throws IOException {
-        logger.info("Вызван метод обновления аватара авторизованного пользователя");
+        logger.debug("Вызван метод обновления аватара авторизованного пользователя");
         UserEntity userEntity = userRepository.findByEmailIgnoreCase(authentication.getName()).orElseThrow(); // TODO сделать исключение
         ImageEntity imageEntity = imageService.downloadImage(image);
+        ImageEntity oldImage = userEntity.getImageEntity();
         userEntity.setImageEntity(imageEntity);
-        userRepository.save(userEntity);
+        userRepository.saveAndFlush(userEntity); // ссылка на старую картинку должна уйти из базы до ее удаления
+        if (oldImage != null) {
+            imageService.deleteImage(oldImage.getId());
+        }
     }
 }
@@ -0,0 +1,8 @@
+-- Разовый пересчет счетчика комментариев после добавления колонки ads.comment_count.
+-- Выполняется вручную один раз (psql -f) после первого старта версии со счетчиком, а не при каждом запуске:
+-- на большой таблице comment агрегирование идет долго и держит блокировки строк ads.
+-- Объявления без комментариев не трогаются: у них счетчик уже 0 по умолчанию.
+UPDATE ads a
+SET comment_count = c.cnt
+FROM (SELECT ad_id, count(*) AS cnt FROM comment GROUP BY ad_id) c
+WHERE c.ad_id = a.id AND a.comment_count <> c.cnt;
@@ -0,0 +1,9 @@
+-- Триграммный индекс для поиска объявлений по подстроке заголовка без учета регистра (AdsRepository.searchByTitle).
+-- Выполняется вручную один раз (psql -f) пользователем с правом CREATE в базе: расширение pg_trgm
+-- доверенное с PostgreSQL 13, в более старых версиях его ставит суперпользователь.
+-- Без индекса поиск работает, но читает всю таблицу ads.
+-- База должна быть в UTF8 с LC_CTYPE не C (например, ru_RU.UTF-8 или C.UTF-8): в SQL_ASCII/C
+-- pg_trgm не выделяет триграммы из кириллицы, и поиск по-русски идет полным чтением индекса.
+-- CONCURRENTLY не блокирует запись в ads на время построения, поэтому скрипт не оборачивается в транзакцию.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ads_title_trgm_idx ON ads USING gin (lower(title) gin_trgm_ops);
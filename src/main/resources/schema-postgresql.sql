@@ -0,0 +1,5 @@
+-- Неопубликованные события outbox: индекс содержит только их и не растет с историей
+CREATE INDEX IF NOT EXISTS outbox_event_unpublished_idx ON outbox_event (id) WHERE stream_position IS NULL;
+
+-- Удаленные, но еще не очищенные объявления: индекс содержит только их
+CREATE INDEX IF NOT EXISTS ads_deleted_idx ON ads (id) WHERE deleted;
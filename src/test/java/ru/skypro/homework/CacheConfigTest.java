@@ -0,0 +1,112 @@
+package ru.skypro.homework;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.skypro.homework.TestData.ads;
+import static ru.skypro.homework.TestData.createAds;
+import static ru.skypro.homework.TestData.user;
+
+/**
+ * Повторное чтение объявления берется из кеша, изменение и удаление сбрасывают запись только после коммита
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CacheConfigTest {
+
+    private static final String EMAIL = "cache@test.ru";
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    private Cache adsCache;
+
+    private AdsEntity ad;
+
+    @BeforeEach
+    void setUp() {
+        ad = transactionTemplate.execute(status ->
+                ads(adsRepository, user(userRepository, EMAIL), "Объявление в кеше"));
+        adsCache = cacheManager.getCache(CacheConfig.ADS_CACHE);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void secondReadIsServedFromCache() {
+        adsService.getAds(ad.getId());
+        statistics.clear();
+
+        assertThat(adsService.getAds(ad.getId()).getTitle()).isEqualTo("Объявление в кеше");
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void updateEvictsEntryAfterCommit() {
+        adsService.getAds(ad.getId());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            adsService.updateAds(createAds("Новый заголовок"), ad.getId());
+            // до коммита запись остается: параллельное чтение не положит в кеш данные до изменения
+            assertThat(adsCache.get(ad.getId())).isNotNull();
+        });
+
+        assertThat(adsCache.get(ad.getId())).isNull();
+        assertThat(adsService.getAds(ad.getId()).getTitle()).isEqualTo("Новый заголовок");
+    }
+
+    @Test
+    void rolledBackUpdateKeepsEntry() {
+        adsService.getAds(ad.getId());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            adsService.updateAds(createAds("Откатили"), ad.getId());
+            status.setRollbackOnly();
+        });
+
+        assertThat(adsCache.get(ad.getId())).isNotNull();
+        assertThat(adsService.getAds(ad.getId()).getTitle()).isEqualTo("Объявление в кеше");
+    }
+
+    @Test
+    void deleteEvictsEntry() {
+        adsService.getAds(ad.getId());
+
+        adsService.deleteAds(ad.getId());
+
+        assertThat(adsCache.get(ad.getId())).isNull();
+        assertThatThrownBy(() -> adsService.getAds(ad.getId())).isInstanceOf(NoSuchElementException.class);
+    }
+}
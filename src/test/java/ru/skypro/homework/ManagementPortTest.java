@@ -0,0 +1,47 @@
+package ru.skypro.homework;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Actuator отвечает только на отдельном порту management.server.port, на порту приложения его нет
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"management.server.port=0", "management.server.address=127.0.0.1",
+                "management.endpoints.web.exposure.include=health,prometheus"})
+@AutoConfigureMetrics
+class ManagementPortTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    void actuatorIsServedOnManagementPortOnly() throws Exception {
+        assertThat(managementPort).isNotEqualTo(serverPort);
+        assertThat(status(managementPort, "/actuator/health")).isEqualTo(200);
+        assertThat(status(managementPort, "/actuator/prometheus")).isEqualTo(200);
+
+        assertThat(status(serverPort, "/actuator/health")).isEqualTo(404);
+        assertThat(status(serverPort, "/actuator/prometheus")).isEqualTo(404);
+    }
+
+    private int status(int port, String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
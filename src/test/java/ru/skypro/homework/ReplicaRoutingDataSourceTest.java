@@ -0,0 +1,127 @@
+package ru.skypro.homework;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Маршрутизация соединений между двумя базами H2: основной и репликой с отставанием из таблицы replica_lag
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration MAX_LAG = Duration.ofMillis(300);
+
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcTemplate replicaJdbcTemplate;
+
+    private ReplicaRoutingDataSource routing;
+
+    private TransactionTemplate readOnly;
+
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        replicaJdbcTemplate = new JdbcTemplate(replica);
+        replicaJdbcTemplate.execute("CREATE TABLE IF NOT EXISTS replica_lag (lag DOUBLE)");
+        replicaJdbcTemplate.execute("DELETE FROM replica_lag");
+        replicaJdbcTemplate.update("INSERT INTO replica_lag (lag) VALUES (0)");
+        routing = new ReplicaRoutingDataSource(primary, replica, MAX_LAG, "SELECT lag FROM replica_lag");
+        routing.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingDataSource.setPrimaryReads(false);
+    }
+
+    @Test
+    void readOnlyTransactionGoesToReplica() {
+        routing.checkLag();
+
+        assertThat(server(readOnly)).isEqualTo("replica");
+        assertThat(server(readWrite)).isEqualTo("primary");
+    }
+
+    @Test
+    void replicaIsNotUsedUntilLagIsMeasured() {
+        assertThat(server(readOnly)).isEqualTo("primary");
+    }
+
+    @Test
+    void laggingReplicaIsNotUsed() {
+        replicaJdbcTemplate.update("UPDATE replica_lag SET lag = ?", MAX_LAG.toMillis() / 1000.0 * 2);
+        routing.checkLag();
+        assertThat(server(readOnly)).isEqualTo("primary");
+
+        replicaJdbcTemplate.update("UPDATE replica_lag SET lag = 0");
+        routing.checkLag();
+        assertThat(server(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    void replicaIsNotUsedWhenLagCheckFails() {
+        routing.checkLag();
+        replicaJdbcTemplate.execute("DROP TABLE replica_lag");
+
+        routing.checkLag();
+
+        assertThat(server(readOnly)).isEqualTo("primary");
+    }
+
+    @Test
+    void replicaIsNotUsedWhenLagIsNotMeasuredAgain() throws InterruptedException {
+        routing.checkLag();
+
+        Thread.sleep(MAX_LAG.toMillis() * 2);
+
+        assertThat(server(readOnly)).isEqualTo("primary");
+    }
+
+    @Test
+    void recentWriterReadsFromPrimary() {
+        routing.checkLag();
+
+        ReplicaRoutingDataSource.setPrimaryReads(true);
+        assertThat(server(readOnly)).isEqualTo("primary");
+
+        ReplicaRoutingDataSource.setPrimaryReads(false);
+        assertThat(server(readOnly)).isEqualTo("replica");
+    }
+
+    /**
+     * Имя базы, в которую ушел запрос внутри транзакции
+     */
+    private String server(TransactionTemplate transactionTemplate) {
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM server", String.class));
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS server (name VARCHAR(16))");
+        jdbcTemplate.execute("DELETE FROM server");
+        jdbcTemplate.update("INSERT INTO server (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
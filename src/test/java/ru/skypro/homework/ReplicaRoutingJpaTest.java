@@ -0,0 +1,158 @@
+package ru.skypro.homework;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.AdsFilter;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+
+import javax.servlet.http.Cookie;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Чтение из реплики через JPA: сервис с @Transactional(readOnly = true) идет в реплику,
+ * клиент после записи и чтение при отставшей реплике - в основную базу.
+ * Реплика - копия основной базы H2, снятая перед тестом, поэтому изменения после копии видны только в основной
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingJpaTest.PRIMARY_URL,
+        "spring.datasource.replica.url=" + ReplicaRoutingJpaTest.REPLICA_URL,
+        "spring.datasource.replica.lag-query=SELECT lag FROM replica_lag",
+        "spring.datasource.replica.max-lag=PT1M"})
+@AutoConfigureMockMvc
+class ReplicaRoutingJpaTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private final JdbcTemplate primaryJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+
+    private final JdbcTemplate replicaJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ReplicaRoutingDataSource routing;
+
+    private String email;
+
+    private AdsEntity ad;
+
+    @BeforeEach
+    void setUp() {
+        email = "replica-" + UUID.randomUUID() + "@test.ru";
+        ad = transactionTemplate.execute(status -> {
+            UserEntity author = new UserEntity();
+            author.setEmail(email);
+            userRepository.save(author);
+            AdsEntity adsEntity = new AdsEntity();
+            adsEntity.setTitle("Старый заголовок");
+            adsEntity.setAuthor(author);
+            return adsRepository.save(adsEntity);
+        });
+        primaryJdbcTemplate.execute("SCRIPT TO 'target/routing-replica.sql'");
+        replicaJdbcTemplate.execute("DROP ALL OBJECTS");
+        replicaJdbcTemplate.execute("RUNSCRIPT FROM 'target/routing-replica.sql'");
+        replicaJdbcTemplate.execute("CREATE TABLE replica_lag (lag DOUBLE)");
+        replicaJdbcTemplate.update("INSERT INTO replica_lag (lag) VALUES (0)");
+        routing.checkLag();
+    }
+
+    @Test
+    void readOnlyServiceMethodReadsReplica() {
+        renameOnPrimary();
+
+        assertThat(title()).isEqualTo("Старый заголовок");
+    }
+
+    @Test
+    void writerReadsOwnWriteFromPrimary() throws Exception {
+        Cookie written = mockMvc.perform(patch("/ads/{id}", ad.getId())
+                        .with(user(email))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Новый заголовок\", \"price\": 10, \"description\": \"\"}"))
+                .andExpect(status().isOk())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE))
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+
+        assertThat(allAds(written)).contains("Новый заголовок");
+        assertThat(allAds(null)).contains("Старый заголовок").doesNotContain("Новый заголовок");
+    }
+
+    @Test
+    void laggingReplicaIsNotRead() {
+        renameOnPrimary();
+        replicaJdbcTemplate.update("UPDATE replica_lag SET lag = 120");
+
+        routing.checkLag();
+
+        assertThat(title()).isEqualTo("Новый заголовок");
+    }
+
+    /**
+     * Ответ GET /ads/all с объявлениями автора, с cookie или без
+     */
+    private String allAds(Cookie cookie) throws Exception {
+        MockHttpServletRequestBuilder request = get("/ads/all")
+                .param("author", String.valueOf(ad.getAuthor().getId()))
+                .with(user(email));
+        if (cookie != null) {
+            request.cookie(cookie);
+        }
+        return mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    private void renameOnPrimary() {
+        primaryJdbcTemplate.update("UPDATE ads SET title = ? WHERE id = ?", "Новый заголовок", ad.getId());
+    }
+
+    /**
+     * Заголовок объявления из {@link AdsService#getAllAds}, метода с @Transactional(readOnly = true)
+     */
+    private String title() {
+        AdsFilter filter = new AdsFilter();
+        filter.setAuthor(ad.getAuthor().getId());
+        return adsService.getAllAds(filter, null, 10).getResults().stream()
+                .filter(ads -> ads.getPk() == ad.getId())
+                .map(Ads::getTitle)
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,33 @@
+package ru.skypro.homework;
+
+import org.junit.jupiter.api.Test;
+import org.springdoc.webmvc.api.OpenApiWebMvcResource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.skypro.homework.service.impl.AdsViewCounter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Профиль fast-startup откладывает создание бинов springdoc до первого обращения и не трогает остальные
+ */
+@SpringBootTest(properties = "startup.lazy-packages=org.springdoc")
+class StartupConfigTest {
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Test
+    void springdocBeansAreLazy() {
+        ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+        String[] springdoc = beanFactory.getBeanNamesForType(OpenApiWebMvcResource.class, true, false);
+        assertThat(springdoc).isNotEmpty();
+        assertThat(beanFactory.getBeanDefinition(springdoc[0]).isLazyInit()).isTrue();
+        assertThat(beanFactory.containsSingleton(springdoc[0])).isFalse();
+
+        String[] counters = beanFactory.getBeanNamesForType(AdsViewCounter.class);
+        assertThat(beanFactory.getBeanDefinition(counters[0]).isLazyInit()).isFalse();
+    }
+}
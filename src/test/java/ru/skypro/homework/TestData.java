@@ -0,0 +1,67 @@
+package ru.skypro.homework;
+
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import ru.skypro.homework.dto.CreateAds;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Общие данные для тестов: пользователь, объявление и картинка.
+ * <br> Пользователь с одним адресом создается один раз на контекст и переиспользуется тестами класса
+ */
+public final class TestData {
+
+    private TestData() {
+    }
+
+    /**
+     * Пользователь с адресом email, создается при первом обращении
+     */
+    public static UserEntity user(UserRepository userRepository, String email) {
+        return userRepository.findByEmailIgnoreCase(email).orElseGet(() -> {
+            UserEntity user = new UserEntity();
+            user.setEmail(email);
+            return userRepository.save(user);
+        });
+    }
+
+    public static Authentication authentication(String email) {
+        return new UsernamePasswordAuthenticationToken(email, null);
+    }
+
+    /**
+     * Объявление автора, сохраненное напрямую в репозиторий, без картинки
+     */
+    public static AdsEntity ads(AdsRepository adsRepository, UserEntity author, String title) {
+        AdsEntity adsEntity = new AdsEntity();
+        adsEntity.setTitle(title);
+        adsEntity.setPrice(100);
+        adsEntity.setAuthor(author);
+        return adsRepository.save(adsEntity);
+    }
+
+    public static CreateAds createAds(String title) {
+        CreateAds createAds = new CreateAds();
+        createAds.setTitle(title);
+        createAds.setPrice(100);
+        createAds.setDescription("Описание");
+        return createAds;
+    }
+
+    public static MockMultipartFile image() {
+        return new MockMultipartFile("image", "image.png", "image/png", new byte[]{1, 2, 3});
+    }
+
+    /**
+     * Картинка с заданным содержимым: разные картинки получают разные хеши
+     */
+    public static MockMultipartFile image(String content) {
+        return new MockMultipartFile("image", "image.png", "image/png", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
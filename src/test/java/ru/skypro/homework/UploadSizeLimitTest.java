@@ -0,0 +1,89 @@
+package ru.skypro.homework;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ru.skypro.homework.dto.RegisterReq;
+import ru.skypro.homework.dto.Role;
+import ru.skypro.homework.service.AuthService;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tomcat отклоняет слишком большую картинку при разборе multipart, до контроллера, и клиент получает 413
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.servlet.multipart.max-file-size=1KB", "spring.servlet.multipart.max-request-size=2KB",
+                "image.storage.type=fs", "image.storage.path=target/test-images"})
+class UploadSizeLimitTest {
+
+    private static final String BOUNDARY = "upload-boundary";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @LocalServerPort
+    private int serverPort;
+
+    @Autowired
+    private AuthService authService;
+
+    private String email;
+
+    @BeforeEach
+    void setUp() {
+        email = "upload-" + UUID.randomUUID() + "@test.ru";
+        RegisterReq registerReq = new RegisterReq();
+        registerReq.setUsername(email);
+        registerReq.setPassword("password");
+        assertThat(authService.register(registerReq, Role.USER)).isTrue();
+    }
+
+    @Test
+    void smallImageIsAccepted() throws Exception {
+        assertThat(uploadUserImage(512)).isEqualTo(200);
+    }
+
+    @Test
+    void imageOverFileSizeIsRejected() throws Exception {
+        assertThat(uploadUserImage(1536)).isEqualTo(413);
+    }
+
+    @Test
+    void requestOverRequestSizeIsRejected() throws Exception {
+        assertThat(uploadUserImage(8192)).isEqualTo(413);
+    }
+
+    /**
+     * PATCH /users/me/image с картинкой заданного размера
+     *
+     * @return код ответа
+     */
+    private int uploadUserImage(int size) throws Exception {
+        byte[] data = new byte[size];
+        data[0] = (byte) UUID.randomUUID().hashCode(); // разное содержимое - разные хеши
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"image\"; filename=\"image.png\"\r\n" +
+                "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(data);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        String credentials = Base64.getEncoder().encodeToString((email + ":password").getBytes(StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + serverPort + "/users/me/image"))
+                .header("Authorization", "Basic " + credentials)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .method("PATCH", HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
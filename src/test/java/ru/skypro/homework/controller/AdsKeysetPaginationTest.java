@@ -0,0 +1,135 @@
+package ru.skypro.homework.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.AdsSort;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Обход /ads/all по курсору: страницы идут в порядке сортировки без повторов и пропусков,
+ * при равных ценах порядок задает id
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AdsKeysetPaginationTest {
+
+    private static final int[] PRICES = {100, 300, 100, 200, 100, 300, 100, 200, 100};
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private UserEntity author;
+
+    private List<AdsEntity> ads;
+
+    @BeforeEach
+    void setUp() {
+        ads = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            author = new UserEntity();
+            author.setEmail("keyset-" + UUID.randomUUID() + "@test.ru");
+            userRepository.save(author);
+            for (int i = 0; i < PRICES.length; i++) {
+                AdsEntity adsEntity = new AdsEntity();
+                adsEntity.setTitle("Объявление " + i);
+                adsEntity.setPrice(PRICES[i]);
+                adsEntity.setAuthor(author);
+                ads.add(adsRepository.save(adsEntity));
+            }
+        });
+    }
+
+    @Test
+    void oldestPagesFollowId() throws Exception {
+        assertThat(walk(null, 2)).containsExactlyElementsOf(expected(Comparator.comparing(AdsEntity::getId)));
+    }
+
+    @Test
+    void newestPagesFollowIdDescending() throws Exception {
+        assertThat(walk(AdsSort.NEWEST, 4))
+                .containsExactlyElementsOf(expected(Comparator.comparing(AdsEntity::getId).reversed()));
+    }
+
+    @Test
+    void equalPricesAreOrderedById() throws Exception {
+        // размер страницы меньше числа объявлений с ценой 100: курсор попадает внутрь группы равных цен
+        assertThat(walk(AdsSort.PRICE_ASC, 2)).containsExactlyElementsOf(
+                expected(Comparator.comparing(AdsEntity::getPrice).thenComparing(AdsEntity::getId)));
+        assertThat(walk(AdsSort.PRICE_DESC, 3)).containsExactlyElementsOf(
+                expected(Comparator.comparing(AdsEntity::getPrice).thenComparing(AdsEntity::getId).reversed()));
+    }
+
+    @Test
+    void pageSizeOfOneVisitsEveryAd() throws Exception {
+        assertThat(walk(AdsSort.PRICE_ASC, 1)).hasSize(PRICES.length).doesNotHaveDuplicates();
+    }
+
+    /**
+     * Проход ленты автора по nextCursor до последней страницы
+     *
+     * @return id объявлений в порядке выдачи
+     */
+    private List<Integer> walk(AdsSort sort, int size) throws Exception {
+        List<Integer> found = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletRequestBuilder request = get("/ads/all")
+                    .param("author", String.valueOf(author.getId()))
+                    .param("size", String.valueOf(size))
+                    .with(user(author.getEmail()));
+            if (sort != null) {
+                request.param("sort", sort.name());
+            }
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            String body = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode page = objectMapper.readTree(body);
+            assertThat(page.get("results").size()).isLessThanOrEqualTo(size);
+            page.get("results").forEach(ads -> found.add(ads.get("pk").asInt()));
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+            assertThat(++pages).isLessThanOrEqualTo(PRICES.length + 1);
+        } while (cursor != null);
+        return found;
+    }
+
+    private List<Integer> expected(Comparator<AdsEntity> order) {
+        return ads.stream().sorted(order).map(AdsEntity::getId).toList();
+    }
+}
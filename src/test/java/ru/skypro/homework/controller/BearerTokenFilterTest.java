@@ -0,0 +1,37 @@
+package ru.skypro.homework.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Неверный Bearer-токен не закрывает открытые пути: картинка отвечает как без токена,
+ * а закрытый путь получает 401 от точки входа
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BearerTokenFilterTest {
+
+    private static final String INVALID_TOKEN = "Bearer not-a-token";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void invalidTokenOnPublicPathIsIgnored() throws Exception {
+        mockMvc.perform(get("/ads/{id}/image", Integer.MAX_VALUE).header(HttpHeaders.AUTHORIZATION, INVALID_TOKEN))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void invalidTokenOnProtectedPathIsUnauthorized() throws Exception {
+        mockMvc.perform(get("/ads/me").header(HttpHeaders.AUTHORIZATION, INVALID_TOKEN))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,210 @@
+package ru.skypro.homework.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.CreateComment;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.CommentEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.CommentRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.CommentService;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Обход комментариев по курсору: новые первыми, при равном createdAt порядок задает id,
+ * страницы не повторяют и не теряют комментарии, в том числе при добавлении и удалении во время обхода.
+ * comment_count объявления совпадает с числом комментариев после параллельных изменений
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CommentKeysetPaginationTest {
+
+    private static final int ROWS = 9;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private UserEntity author;
+
+    private AdsEntity ad;
+
+    private List<CommentEntity> comments;
+
+    @BeforeEach
+    void setUp() {
+        comments = new ArrayList<>();
+        LocalDateTime base = LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        transactionTemplate.executeWithoutResult(status -> {
+            author = new UserEntity();
+            author.setEmail("comments-" + UUID.randomUUID() + "@test.ru");
+            userRepository.save(author);
+            AdsEntity adsEntity = new AdsEntity();
+            adsEntity.setTitle("Объявление с комментариями");
+            adsEntity.setAuthor(author);
+            ad = adsRepository.save(adsEntity);
+            for (int i = 0; i < ROWS; i++) {
+                CommentEntity comment = new CommentEntity();
+                comment.setAd(ad);
+                comment.setAuthor(author);
+                comment.setText("Комментарий " + i);
+                // по три комментария на одно время: курсор попадает внутрь группы равных createdAt
+                comment.setCreatedAt(base.plusSeconds(i / 3));
+                comments.add(commentRepository.save(comment));
+            }
+            adsRepository.addCommentCount(ad.getId(), ROWS);
+        });
+    }
+
+    @Test
+    void pagesFollowCreatedAtAndId() throws Exception {
+        assertThat(walk(null, 2)).containsExactlyElementsOf(expected());
+        assertThat(walk(null, 1)).containsExactlyElementsOf(expected());
+    }
+
+    @Test
+    void changesDuringWalkDoNotDuplicateOrSkip() throws Exception {
+        List<Integer> expected = new ArrayList<>(expected());
+        JsonNode first = page(null, 3);
+        List<Integer> found = new ArrayList<>();
+        first.get("results").forEach(comment -> found.add(comment.get("pk").asInt()));
+
+        // новый комментарий свежее курсора и в следующие страницы не попадает,
+        // удаленный комментарий еще не показанной страницы пропадает без сдвига остальных
+        Integer added = commentService.addComment(ad.getId(), createComment("Новый"), authentication()).getPk();
+        Integer deleted = expected.get(5);
+        commentService.deleteComment(ad.getId(), deleted);
+        expected.remove(deleted);
+
+        found.addAll(walk(first.get("nextCursor").asText(), 3));
+
+        assertThat(found).containsExactlyElementsOf(expected).doesNotContain(added);
+        assertThat(adsRepository.findById(ad.getId()).orElseThrow().getCommentCount()).isEqualTo(ROWS);
+    }
+
+    @Test
+    void commentCountMatchesAfterConcurrentAddAndDelete() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Object>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String text = "Параллельный " + i;
+                tasks.add(() -> commentService.addComment(ad.getId(), createComment(text), authentication()));
+            }
+            for (int i = 0; i < 5; i++) {
+                Integer commentId = comments.get(i).getId();
+                tasks.add(() -> {
+                    commentService.deleteComment(ad.getId(), commentId);
+                    return null;
+                });
+                // повторное удаление того же комментария не должно уменьшать счетчик второй раз
+                tasks.add(() -> {
+                    commentService.deleteComment(ad.getId(), commentId);
+                    return null;
+                });
+            }
+            for (Future<Object> future : executor.invokeAll(tasks, 30, TimeUnit.SECONDS)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Integer> found = walk(null, 4);
+        assertThat(found).hasSize(ROWS + 8 - 5).doesNotHaveDuplicates();
+        assertThat(adsRepository.findById(ad.getId()).orElseThrow().getCommentCount()).isEqualTo(found.size());
+    }
+
+    /**
+     * Проход комментариев по nextCursor начиная с курсора до последней страницы
+     *
+     * @return id комментариев в порядке выдачи
+     */
+    private List<Integer> walk(String cursor, int size) throws Exception {
+        List<Integer> found = new ArrayList<>();
+        int pages = 0;
+        do {
+            JsonNode page = page(cursor, size);
+            assertThat(page.get("results").size()).isLessThanOrEqualTo(size);
+            page.get("results").forEach(comment -> found.add(comment.get("pk").asInt()));
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+            assertThat(++pages).isLessThanOrEqualTo(ROWS + 10);
+        } while (cursor != null);
+        return found;
+    }
+
+    private JsonNode page(String cursor, int size) throws Exception {
+        MockHttpServletRequestBuilder request = get("/ads/{id}/comments", ad.getId())
+                .param("size", String.valueOf(size))
+                .with(user(author.getEmail()));
+        if (cursor != null) {
+            request.param("cursor", cursor);
+        }
+        String body = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private List<Integer> expected() {
+        return comments.stream()
+                .sorted(Comparator.comparing(CommentEntity::getCreatedAt).thenComparing(CommentEntity::getId).reversed())
+                .map(CommentEntity::getId)
+                .toList();
+    }
+
+    private Authentication authentication() {
+        return new UsernamePasswordAuthenticationToken(author.getEmail(), null);
+    }
+
+    private static CreateComment createComment(String text) {
+        CreateComment createComment = new CreateComment();
+        createComment.setText(text);
+        return createComment;
+    }
+}
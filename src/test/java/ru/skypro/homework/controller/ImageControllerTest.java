@@ -0,0 +1,166 @@
+package ru.skypro.homework.controller;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.ImageStorage;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.skypro.homework.TestData.user;
+
+/**
+ * Картинка отдается с ETag по хешу содержимого, отвечает 304 на совпавший If-None-Match и 206 на Range,
+ * а по ссылке с версией кешируется навсегда. Содержимое из БД читается только для ответа с телом
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+class ImageControllerTest {
+
+    private static final String EMAIL = "image@test.ru";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private byte[] data;
+
+    private ImageEntity image;
+
+    private AdsEntity ad;
+
+    @BeforeEach
+    void setUp() {
+        data = ("картинка-" + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        ad = transactionTemplate.execute(status -> {
+            UserEntity author = user(userRepository, EMAIL);
+            image = new ImageEntity();
+            image.setHash(sha256(data));
+            image.setFileSize((long) data.length);
+            image.setMediaType("image/png");
+            try {
+                imageStorage.store(image, data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            imageRepository.save(image);
+            AdsEntity adsEntity = new AdsEntity();
+            adsEntity.setTitle("Объявление с картинкой");
+            adsEntity.setAuthor(author);
+            adsEntity.setImageEntity(image);
+            return adsRepository.save(adsEntity);
+        });
+    }
+
+    @Test
+    void imageHasContentHashETag() throws Exception {
+        mockMvc.perform(get("/ads/{id}/image", ad.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + sha256(data) + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(content().contentType("image/png"))
+                .andExpect(content().bytes(data));
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        mockMvc.perform(get("/ads/{id}/image", ad.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"" + sha256(data) + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+        mockMvc.perform(get("/ads/{id}/image", ad.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"другой\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void notModifiedDoesNotReadContent() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(get("/ads/{id}/image", ad.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"" + sha256(data) + "\""))
+                .andExpect(status().isNotModified());
+        // только метаданные картинки, без колонки data
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        mockMvc.perform(get("/ads/{id}/image", ad.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void rangeIsPartialContent() throws Exception {
+        mockMvc.perform(get("/ads/{id}/image", ad.getId()).header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/" + data.length))
+                .andExpect(content().bytes(Arrays.copyOfRange(data, 2, 6)));
+    }
+
+    @Test
+    void versionedLinkIsImmutable() throws Exception {
+        mockMvc.perform(get("/ads/{id}/image", ad.getId()).param("v", String.valueOf(image.getId())))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("max-age=31536000")));
+        // устаревшая версия в ссылке: картинку уже заменили, навсегда кешировать нельзя
+        mockMvc.perform(get("/ads/{id}/image", ad.getId()).param("v", String.valueOf(image.getId() + 1)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, not(containsString("immutable"))));
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.skypro.homework.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Запросы ленты с фильтрами ({@link AdsSpecifications}) обслуживаются индексами {@link ru.skypro.homework.entity.AdsEntity}.
+ * <br> Нужен PostgreSQL: POSTGRES_URL=jdbc:postgresql://localhost:5432/ads_test (POSTGRES_USER, POSTGRES_PASSWORD).
+ * Схема создается ddl-auto=update, данные не нужны: последовательное чтение выключено,
+ * и план показывает, может ли запрос идти по индексу без сортировки
+ */
+@EnabledIfEnvironmentVariable(named = "POSTGRES_URL", matches = "jdbc:postgresql:.+")
+@SpringBootTest(properties = {
+        "spring.datasource.url=${POSTGRES_URL}",
+        "spring.datasource.username=${POSTGRES_USER:postgres}",
+        "spring.datasource.password=${POSTGRES_PASSWORD:}",
+        "spring.jpa.hibernate.ddl-auto=update",
+        "spring.sql.init.mode=never"
+})
+class AdsIndexExplainTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void priceRangeSortedByPriceUsesPriceIndex() {
+        assertThat(explain("SELECT * FROM ads WHERE price >= 100 AND price <= 500 ORDER BY price ASC, id ASC LIMIT 21"))
+                .contains("ads_price_id_idx")
+                .doesNotContain("Sort");
+    }
+
+    @Test
+    void priceDescendingAfterCursorUsesPriceIndex() {
+        assertThat(explain("SELECT * FROM ads WHERE price < 300 OR price = 300 AND id < 10 ORDER BY price DESC, id DESC LIMIT 21"))
+                .contains("ads_price_id_idx")
+                .doesNotContain("Sort");
+    }
+
+    @Test
+    void authorNewestFirstUsesAuthorIndex() {
+        assertThat(explain("SELECT * FROM ads WHERE author_id = 1 ORDER BY id DESC LIMIT 21"))
+                .contains("ads_author_id_idx")
+                .doesNotContain("Sort");
+    }
+
+    @Test
+    void authorAndPriceRangeUsesAuthorPriceIndex() {
+        assertThat(explain("SELECT * FROM ads WHERE author_id = 1 AND price >= 100 ORDER BY price ASC, id ASC LIMIT 21"))
+                .contains("ads_author_price_idx")
+                .doesNotContain("Sort");
+    }
+
+    @Test
+    void titleSearchUsesTrigramIndexFromScript() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/title-trigram-index.sql")).execute(dataSource);
+
+        assertThat(explain("SELECT * FROM ads WHERE deleted = false AND lower(title) LIKE '%guitar%' " +
+                "ORDER BY position('guitar' in lower(title)), length(title), id LIMIT 21"))
+                .contains("ads_title_trgm_idx");
+    }
+
+    /**
+     * План запроса одной строкой; SET LOCAL действует до конца транзакции
+     */
+    private String explain(String sql) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+        });
+    }
+}
@@ -0,0 +1,171 @@
+package ru.skypro.homework.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.BulkAds;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.exception.InvalidImportException;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsBulkService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Экспортированные объявления импортируются обратно без изменений; импорт с чужой картинкой,
+ * отрицательной ценой или сверх ads.bulk.max-rows не добавляет ничего
+ */
+@SpringBootTest(properties = {"ads.bulk.batch-size=2", "ads.bulk.max-rows=5"})
+class AdsBulkServiceTest {
+
+    @Autowired
+    private AdsBulkService adsBulkService;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private UserEntity author;
+
+    private ImageEntity image;
+
+    @BeforeEach
+    void setUp() {
+        author = saveUser();
+        image = transactionTemplate.execute(status -> {
+            ImageEntity adImage = imageRepository.save(ImageServiceImpl.newImage(UUID.randomUUID().toString().getBytes(), "image/png"));
+            saveAds(author, "С картинкой", 100, adImage);
+            saveAds(author, "Без картинки", 200, null);
+            saveAds(author, "Третье", 300, null);
+            return adImage;
+        });
+    }
+
+    @Test
+    void exportedAdsAreImportedBack() throws IOException {
+        List<BulkAds> exported = export(author);
+        assertThat(exported).hasSize(3);
+
+        int imported = adsBulkService.importAds(ndjson(exported), authentication(author));
+
+        assertThat(imported).isEqualTo(3);
+        List<BulkAds> all = export(author);
+        assertThat(all).hasSize(6)
+                .extracting(BulkAds::getTitle, BulkAds::getPrice, BulkAds::getDescription, BulkAds::getImage)
+                .containsExactlyInAnyOrder(
+                        tuple("С картинкой", 100, "Описание", image.getId()),
+                        tuple("Без картинки", 200, "Описание", null),
+                        tuple("Третье", 300, "Описание", null),
+                        tuple("С картинкой", 100, "Описание", image.getId()),
+                        tuple("Без картинки", 200, "Описание", null),
+                        tuple("Третье", 300, "Описание", null));
+    }
+
+    @Test
+    void foreignImageIsRejected() throws IOException {
+        UserEntity other = saveUser();
+        List<BulkAds> exported = export(author);
+
+        assertThatThrownBy(() -> adsBulkService.importAds(ndjson(exported), authentication(other)))
+                .isInstanceOf(InvalidImportException.class);
+
+        assertThat(export(other)).isEmpty();
+    }
+
+    @Test
+    void invalidRowRejectsWholeImport() throws IOException {
+        List<BulkAds> rows = export(author);
+        rows.get(2).setPrice(-1);
+
+        assertThatThrownBy(() -> adsBulkService.importAds(ndjson(rows), authentication(author)))
+                .isInstanceOf(InvalidImportException.class);
+
+        assertThat(export(author)).hasSize(3);
+    }
+
+    @Test
+    void tooManyRowsAreRejected() throws IOException {
+        List<BulkAds> rows = new ArrayList<>(export(author));
+        rows.addAll(export(author));
+
+        assertThatThrownBy(() -> adsBulkService.importAds(ndjson(rows), authentication(author)))
+                .isInstanceOf(InvalidImportException.class);
+
+        assertThat(export(author)).hasSize(3);
+    }
+
+    /**
+     * Объявления автора из полного экспорта
+     */
+    private List<BulkAds> export(UserEntity user) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        adsBulkService.exportAds(out);
+        List<BulkAds> rows = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                rows.add(objectMapper.readValue(line, BulkAds.class));
+            }
+        }
+        return rows.stream().filter(row -> user.getId().equals(row.getAuthor())).collect(Collectors.toList());
+    }
+
+    private ByteArrayInputStream ndjson(List<BulkAds> rows) throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (BulkAds row : rows) {
+            ndjson.append(objectMapper.writeValueAsString(row)).append('\n');
+        }
+        return new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void saveAds(UserEntity user, String title, int price, ImageEntity adImage) {
+        AdsEntity adsEntity = new AdsEntity();
+        adsEntity.setTitle(title);
+        adsEntity.setPrice(price);
+        adsEntity.setDescription("Описание");
+        adsEntity.setAuthor(user);
+        adsEntity.setImageEntity(adImage);
+        adsRepository.save(adsEntity);
+    }
+
+    private UserEntity saveUser() {
+        UserEntity user = new UserEntity();
+        user.setEmail("bulk-" + UUID.randomUUID() + "@test.ru");
+        user.setFirstName("Импорт");
+        return userRepository.save(user);
+    }
+
+    private static Authentication authentication(UserEntity user) {
+        return new UsernamePasswordAuthenticationToken(user.getEmail(), null);
+    }
+}
@@ -0,0 +1,158 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.AdsFilter;
+import ru.skypro.homework.entity.CommentEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.exception.ObjectAbsenceException;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.CommentRepository;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsBulkService;
+import ru.skypro.homework.service.AdsService;
+import ru.skypro.homework.service.CommentService;
+import ru.skypro.homework.service.ImageService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+import static ru.skypro.homework.TestData.authentication;
+import static ru.skypro.homework.TestData.createAds;
+import static ru.skypro.homework.TestData.image;
+import static ru.skypro.homework.TestData.user;
+
+/**
+ * Удаленное объявление сразу пропадает из выдачи, а комментарии и картинку порциями удаляет {@link AdsReaper}
+ */
+@SpringBootTest(properties = "ads.reaper.batch-size=10")
+class AdsReaperTest {
+
+    private static final String EMAIL = "reaper@test.ru";
+
+    @Autowired
+    private AdsReaper adsReaper;
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private AdsBulkService adsBulkService;
+
+    @SpyBean
+    private ImageService imageService;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Authentication authentication = authentication(EMAIL);
+
+    private UserEntity author;
+
+    @BeforeEach
+    void setUp() {
+        adsReaper.reapAll();
+        author = user(userRepository, EMAIL);
+    }
+
+    @Test
+    void deletedAdsDisappearsAndIsReapedWithCommentsAndImage() {
+        Ads ads = adsService.createAds(createAds("Объявление на удаление"), image(), authentication);
+        Integer imageId = adsRepository.findImageIdById(ads.getPk());
+        transactionTemplate.executeWithoutResult(status -> commentRepository.saveAll(
+                IntStream.range(0, 25).mapToObj(i -> comment(ads.getPk(), i)).collect(Collectors.toList())));
+
+        adsService.deleteAds(ads.getPk());
+
+        AdsFilter filter = new AdsFilter();
+        filter.setAuthor(author.getId());
+        assertThat(adsService.getAllAds(filter, null, 100).getResults())
+                .extracting(Ads::getPk)
+                .doesNotContain(ads.getPk());
+        assertThat(adsService.getAdsMe(authentication)).extracting(Ads::getPk).doesNotContain(ads.getPk());
+        assertThatThrownBy(() -> adsService.getAds(ads.getPk())).isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> adsService.deleteAds(ads.getPk())).isInstanceOf(ObjectAbsenceException.class);
+        assertThatThrownBy(() -> commentService.getComments(ads.getPk(), null, 100)).isInstanceOf(ObjectAbsenceException.class);
+        assertThatThrownBy(() -> imageService.getAdsImage(ads.getPk())).isInstanceOf(ObjectAbsenceException.class);
+        assertThat(export()).doesNotContain("\"pk\":" + ads.getPk() + ",");
+        assertThat(commentRepository.findIdsByAdId(ads.getPk(), PageRequest.of(0, 100))).hasSize(25);
+
+        assertThat(adsReaper.reapAll()).isEqualTo(1);
+
+        assertThat(adsRepository.existsById(ads.getPk())).isFalse();
+        assertThat(commentRepository.findIdsByAdId(ads.getPk(), PageRequest.of(0, 100))).isEmpty();
+        assertThat(imageRepository.existsById(imageId)).isFalse();
+    }
+
+    @Test
+    void failedAdsIsSkippedAndReapedNextTime() {
+        Ads broken = adsService.createAds(createAds("Объявление на удаление"), image(), authentication);
+        Ads ads = adsService.createAds(createAds("Объявление на удаление"), image(), authentication);
+        Integer brokenImageId = adsRepository.findImageIdById(broken.getPk());
+        adsService.deleteAds(broken.getPk());
+        adsService.deleteAds(ads.getPk());
+        doThrow(new IllegalStateException("Хранилище недоступно")).when(imageService).deleteImages(List.of(brokenImageId));
+
+        assertThat(adsReaper.reapAll()).isEqualTo(1);
+
+        assertThat(adsRepository.existsById(broken.getPk())).isTrue();
+        assertThat(adsRepository.existsById(ads.getPk())).isFalse();
+
+        reset(imageService);
+        assertThat(adsReaper.reapAll()).isEqualTo(1);
+        assertThat(adsRepository.existsById(broken.getPk())).isFalse();
+    }
+
+    private String export() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            adsBulkService.exportAds(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private CommentEntity comment(Integer adsId, int i) {
+        CommentEntity comment = new CommentEntity();
+        comment.setAd(adsRepository.getReferenceById(adsId));
+        comment.setAuthor(author);
+        comment.setText("Комментарий " + i);
+        comment.setCreatedAt(LocalDateTime.now());
+        return comment;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.AdsFilter;
+import ru.skypro.homework.dto.ResponseWrapperAds;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.skypro.homework.TestData.user;
+
+/**
+ * Поиск по заголовку не зависит от регистра: сначала совпадения в начале заголовка,
+ * затем более короткие заголовки, страницы не теряют и не повторяют объявления
+ */
+@SpringBootTest
+class AdsSearchTest {
+
+    private static final String EMAIL = "search@test.ru";
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void prefixMatchesComeFirstThenShorterTitles() {
+        String word = uniqueWord();
+        List<String> expected = List.of(
+                word + " кот",
+                word.toUpperCase(Locale.ROOT) + " длинный заголовок",
+                "Мой " + word,
+                "Продам " + word + " велосипед");
+        saveAds(List.of(expected.get(3), expected.get(1), "Без совпадения", expected.get(2), expected.get(0)));
+
+        assertThat(search(word.toUpperCase(Locale.ROOT), null, 10).getResults())
+                .extracting(Ads::getTitle)
+                .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void pagesFollowRanking() {
+        String word = uniqueWord();
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            titles.add(word + " " + "x".repeat(i + 1));
+        }
+        saveAds(titles);
+
+        List<String> found = new ArrayList<>();
+        String cursor = null;
+        do {
+            ResponseWrapperAds<Ads> page = search(word, cursor, 2);
+            page.getResults().forEach(ads -> found.add(ads.getTitle()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(found).containsExactlyElementsOf(titles);
+    }
+
+    private ResponseWrapperAds<Ads> search(String title, String cursor, int size) {
+        AdsFilter filter = new AdsFilter();
+        filter.setTitle(title);
+        return adsService.getAllAds(filter, cursor, size);
+    }
+
+    private void saveAds(List<String> titles) {
+        transactionTemplate.executeWithoutResult(status -> {
+            UserEntity author = user(userRepository, EMAIL);
+            for (String title : titles) {
+                AdsEntity adsEntity = new AdsEntity();
+                adsEntity.setTitle(title);
+                adsEntity.setAuthor(author);
+                adsRepository.save(adsEntity);
+            }
+        });
+    }
+
+    /**
+     * Слово из латинских букв, которого нет в заголовках других тестов
+     */
+    private static String uniqueWord() {
+        return "w" + UUID.randomUUID().toString().replaceAll("[^a-f]", "");
+    }
+}
@@ -0,0 +1,125 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.FullAds;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.skypro.homework.TestData.authentication;
+import static ru.skypro.homework.TestData.createAds;
+import static ru.skypro.homework.TestData.image;
+import static ru.skypro.homework.TestData.user;
+
+/**
+ * Просмотры копятся в памяти, видны сразу и попадают в базу одной пакетной записью
+ */
+@SpringBootTest
+class AdsViewCounterTest {
+
+    private static final String EMAIL = "views@test.ru";
+
+    @Autowired
+    private AdsViewCounter adsViewCounter;
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Authentication authentication = authentication(EMAIL);
+
+    @BeforeEach
+    void setUp() {
+        adsViewCounter.flush();
+        user(userRepository, EMAIL);
+    }
+
+    @Test
+    void concurrentViewsAreFlushedInOneBatch() throws Exception {
+        Ads ads = adsService.createAds(createAds("Объявление с просмотрами"), image(), authentication);
+        int threads = 8;
+        int viewsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < viewsPerThread; j++) {
+                        adsViewCounter.viewed(adsService.getAds(ads.getPk()));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long total = (long) threads * viewsPerThread;
+        assertThat(views(ads.getPk())).isZero();
+        assertThat(adsService.getAds(ads.getPk()).getViews()).isZero();
+
+        adsViewCounter.flush();
+
+        assertThat(views(ads.getPk())).isEqualTo(total);
+        assertThat(adsViewCounter.pending(ads.getPk())).isZero();
+        FullAds viewed = adsViewCounter.viewed(adsService.getAds(ads.getPk()));
+        assertThat(viewed.getViews()).isEqualTo(total + 1);
+        assertThat(adsService.getAdsMe(authentication))
+                .filteredOn(own -> own.getPk() == ads.getPk())
+                .extracting(Ads::getViews)
+                .containsExactly(total + 1);
+    }
+
+    @Test
+    void viewsDuringFlushAreNotLost() throws Exception {
+        Ads ads = adsService.createAds(createAds("Объявление с просмотрами"), image(), authentication);
+        FullAds fullAds = adsService.getAds(ads.getPk());
+        int threads = 4;
+        int viewsPerThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < viewsPerThread; j++) {
+                        adsViewCounter.viewed(fullAds);
+                    }
+                }));
+            }
+            while (!futures.stream().allMatch(Future::isDone)) {
+                adsViewCounter.flush();
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        adsViewCounter.flush();
+        adsViewCounter.flush();
+
+        assertThat(views(ads.getPk())).isEqualTo((long) threads * viewsPerThread);
+    }
+
+    private long views(int adsId) {
+        return jdbcTemplate.queryForObject("SELECT views FROM ads WHERE id = ?", Long.class, adsId);
+    }
+}
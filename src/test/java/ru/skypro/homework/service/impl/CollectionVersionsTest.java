@@ -0,0 +1,198 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.CreateComment;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.CollectionVersionRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+import ru.skypro.homework.service.CommentService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Списки отвечают 304 на совпавший ETag, после коммита изменения ETag сразу меняется,
+ * у /ads/me ETag свой у каждого пользователя
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CollectionVersionsTest {
+
+    private static final String EMAIL = "etag@test.ru";
+
+    private static final String OTHER_EMAIL = "etag-other@test.ru";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private CollectionVersions collectionVersions;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private CollectionVersionRepository collectionVersionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private AdsEntity ad;
+
+    @BeforeEach
+    void setUp() {
+        ad = transactionTemplate.execute(status -> {
+            UserEntity author = saveUser(EMAIL, "Автор");
+            saveUser(OTHER_EMAIL, "Другой");
+            AdsEntity adsEntity = new AdsEntity();
+            adsEntity.setTitle("Объявление с ETag");
+            adsEntity.setAuthor(author);
+            return adsRepository.save(adsEntity);
+        });
+    }
+
+    @Test
+    void adsListIsNotModifiedUntilCommentIsAdded() throws Exception {
+        String etag = etag("/ads/all", EMAIL);
+        mockMvc.perform(get("/ads/all").with(user(EMAIL)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        addComment();
+
+        String changed = etag("/ads/all", EMAIL);
+        assertThat(changed).isNotEqualTo(etag);
+        mockMvc.perform(get("/ads/all").with(user(EMAIL)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void commentsETagChangesOnlyForChangedAd() throws Exception {
+        AdsEntity other = transactionTemplate.execute(status -> {
+            AdsEntity adsEntity = new AdsEntity();
+            adsEntity.setTitle("Другое объявление");
+            adsEntity.setAuthor(userRepository.findByEmailIgnoreCase(EMAIL).orElseThrow());
+            return adsRepository.save(adsEntity);
+        });
+        String path = "/ads/" + ad.getId() + "/comments";
+        String otherPath = "/ads/" + other.getId() + "/comments";
+        String etag = etag(path, EMAIL);
+        String otherETag = etag(otherPath, EMAIL);
+        mockMvc.perform(get(path).with(user(EMAIL)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        addComment();
+
+        assertThat(etag(path, EMAIL)).isNotEqualTo(etag);
+        mockMvc.perform(get(otherPath).with(user(EMAIL)).header(HttpHeaders.IF_NONE_MATCH, otherETag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void commentsOfDeletedAdAreNotFoundDespiteStoredETag() throws Exception {
+        addComment();
+        String path = "/ads/" + ad.getId() + "/comments";
+        String etag = etag(path, EMAIL);
+
+        adsService.deleteAds(ad.getId());
+
+        mockMvc.perform(get(path).with(user(EMAIL)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void writerSeesNewETagRightAfterCommit() throws Exception {
+        String etag = etag("/ads/all", EMAIL);
+
+        addComment();
+
+        mockMvc.perform(get("/ads/all").with(user(EMAIL)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void rolledBackChangeKeepsETag() throws Exception {
+        String etag = etag("/ads/all", EMAIL);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            addComment();
+            status.setRollbackOnly();
+        });
+
+        mockMvc.perform(get("/ads/all").with(user(EMAIL)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void changesSpreadOverStripesAndSumUp() {
+        long before = collectionVersionRepository.sumVersions(CollectionVersions.ADS);
+
+        for (int i = 0; i < 20; i++) {
+            transactionTemplate.executeWithoutResult(status -> {
+                collectionVersions.adsChanged();
+                collectionVersions.adsChanged(); // второй вызов в той же транзакции версию не увеличивает
+            });
+        }
+
+        assertThat(collectionVersionRepository.sumVersions(CollectionVersions.ADS)).isEqualTo(before + 20);
+        assertThat(collectionVersionRepository.findAll())
+                .filteredOn(row -> row.getName().startsWith(CollectionVersions.ADS + ":"))
+                .hasSize(15);
+    }
+
+    @Test
+    void adsMeETagIsPerUser() throws Exception {
+        String etag = etag("/ads/me", EMAIL);
+        String otherETag = etag("/ads/me", OTHER_EMAIL);
+
+        assertThat(etag).isNotEqualTo(otherETag);
+        mockMvc.perform(get("/ads/me").with(user(OTHER_EMAIL)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/ads/me").with(user(EMAIL)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    private String etag(String path, String email) throws Exception {
+        String etag = mockMvc.perform(get(path).with(user(email)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotBlank();
+        return etag;
+    }
+
+    private void addComment() {
+        CreateComment createComment = new CreateComment();
+        createComment.setText("Новый комментарий");
+        commentService.addComment(ad.getId(), createComment, new UsernamePasswordAuthenticationToken(EMAIL, null));
+    }
+
+    private UserEntity saveUser(String email, String firstName) {
+        return userRepository.findByEmailIgnoreCase(email).orElseGet(() -> {
+            UserEntity user = new UserEntity();
+            user.setEmail(email);
+            user.setFirstName(firstName);
+            return userRepository.save(user);
+        });
+    }
+}
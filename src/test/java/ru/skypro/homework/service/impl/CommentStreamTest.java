@@ -0,0 +1,318 @@
+package ru.skypro.homework.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.skypro.homework.dto.Comment;
+import ru.skypro.homework.dto.CreateComment;
+import ru.skypro.homework.dto.DomainEventType;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.exception.TooManySubscriptionsException;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+import ru.skypro.homework.service.CommentService;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.skypro.homework.TestData.ads;
+import static ru.skypro.homework.TestData.authentication;
+import static ru.skypro.homework.TestData.user;
+
+/**
+ * Подписчик GET /ads/{id}/comments/stream получает только закоммиченные изменения комментариев;
+ * зависший клиент отключается и не останавливает рассылку остальным, а потоков взамен зависших не больше предела.
+ * Подписаться можно только на существующее объявление и не больше чем на заданное число потоков,
+ * удаление объявления закрывает его потоки
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CommentStreamTest {
+
+    private static final String EMAIL = "stream@test.ru";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private CommentStreamHub commentStreamHub;
+
+    private final Authentication authentication = authentication(EMAIL);
+
+    private AdsEntity ad;
+
+    @BeforeEach
+    void setUp() {
+        ad = transactionTemplate.execute(status ->
+                ads(adsRepository, user(userRepository, EMAIL), "Объявление с подпиской"));
+    }
+
+    @Test
+    void subscriberReceivesCommittedChanges() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/ads/{id}/comments/stream", ad.getId()).with(user(EMAIL)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        Comment comment = commentService.addComment(ad.getId(), createComment("Первый"), authentication);
+        transactionTemplate.executeWithoutResult(status -> {
+            commentService.addComment(ad.getId(), createComment("Откатили"), authentication);
+            status.setRollbackOnly();
+        });
+        commentService.deleteComment(ad.getId(), comment.getPk());
+
+        String events = awaitContent(stream, "event:COMMENT_DELETED");
+        assertThat(events)
+                .contains("id:" + comment.getPk() + "\nevent:COMMENT_CREATED\n")
+                .contains("\"text\":\"Первый\"")
+                .doesNotContain("Откатили");
+        assertThat(events.indexOf("COMMENT_CREATED")).isLessThan(events.indexOf("COMMENT_DELETED"));
+    }
+
+    @Test
+    void overflowingStalledSubscriberIsCompletedAndOthersAreServed() throws Exception {
+        CommentStreamHub hub = hub(Duration.ofMinutes(1), 1, 5);
+        try {
+            BlockingEmitter stalled = new BlockingEmitter(true);
+            hub.subscribe(1, EMAIL, stalled);
+            assertThat(stalled.sending.await(5, TimeUnit.SECONDS)).isTrue();
+            RecordingEmitter other = new RecordingEmitter();
+            hub.subscribe(2, EMAIL, other);
+
+            for (int i = 0; i < 3; i++) { // буфер на 2 события, третье отключает зависшего подписчика
+                hub.onCommentChanged(new CommentChangedEvent(1, DomainEventType.COMMENT_CREATED, i, Map.of("pk", i)));
+            }
+
+            assertThat(stalled.completed.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(other.sent.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            hub.shutdown();
+        }
+    }
+
+    @Test
+    void sendLongerThanTimeoutIsAbandoned() throws Exception {
+        CommentStreamHub hub = hub(Duration.ofMillis(100), 1, 5);
+        BlockingEmitter stalled = new BlockingEmitter(false);
+        try {
+            hub.subscribe(1, EMAIL, stalled);
+            assertThat(stalled.sending.await(5, TimeUnit.SECONDS)).isTrue();
+            RecordingEmitter other = new RecordingEmitter();
+            hub.subscribe(2, EMAIL, other);
+
+            Thread.sleep(200);
+            hub.evictStalled();
+
+            // отправка не реагирует на прерывание, как запись Tomcat: остальных обслуживает поток взамен
+            assertThat(other.sent.await(5, TimeUnit.SECONDS)).isTrue();
+            stalled.release.countDown();
+            assertThat(stalled.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            stalled.release.countDown();
+            hub.shutdown();
+        }
+    }
+
+    @Test
+    void replacementDispatchersAreCapped() throws Exception {
+        CommentStreamHub hub = hub(Duration.ofMillis(100), 1, 5);
+        BlockingEmitter first = new BlockingEmitter(false);
+        BlockingEmitter second = new BlockingEmitter(false);
+        try {
+            hub.subscribe(1, EMAIL, first);
+            assertThat(first.sending.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(200);
+            hub.evictStalled(); // первый зависший получает поток взамен
+            hub.subscribe(2, EMAIL, second);
+            assertThat(second.sending.await(5, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(200);
+            hub.evictStalled(); // второму поток взамен уже не положен
+
+            RecordingEmitter other = new RecordingEmitter();
+            hub.subscribe(3, EMAIL, other);
+            assertThat(other.sent.await(300, TimeUnit.MILLISECONDS)).isFalse();
+
+            first.release.countDown();
+            assertThat(other.sent.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            first.release.countDown();
+            second.release.countDown();
+            hub.shutdown();
+        }
+    }
+
+    @Test
+    void subscriptionsPerUserAreCapped() throws Exception {
+        CommentStreamHub hub = hub(Duration.ofMinutes(1), 1, 2);
+        try {
+            hub.subscribe(1, EMAIL, new RecordingEmitter());
+            hub.subscribe(2, EMAIL, new RecordingEmitter());
+
+            assertThatThrownBy(() -> hub.subscribe(3, EMAIL, new RecordingEmitter()))
+                    .isInstanceOf(TooManySubscriptionsException.class);
+            hub.subscribe(3, "other@test.ru", new RecordingEmitter());
+
+            hub.onAdsDeleted(new AdsDeletedEvent(1)); // закрытый поток освобождает место
+            hub.subscribe(3, EMAIL, new RecordingEmitter());
+        } finally {
+            hub.shutdown();
+        }
+    }
+
+    @Test
+    void streamOfMissingOrDeletedAdIsNotFound() throws Exception {
+        adsService.deleteAds(ad.getId());
+
+        mockMvc.perform(get("/ads/{id}/comments/stream", ad.getId()).with(user(EMAIL)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/ads/{id}/comments/stream", Integer.MAX_VALUE).with(user(EMAIL)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void deletingAdClosesItsStreams() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        commentStreamHub.subscribe(ad.getId(), EMAIL, emitter);
+
+        adsService.deleteAds(ad.getId());
+
+        assertThat(emitter.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void adDeletedElsewhereIsClosedOnHeartbeat() throws Exception {
+        CommentStreamHub hub = hub(Duration.ofMinutes(1), 1, 5); // репозиторий-заглушка: неудаленных объявлений нет
+        try {
+            RecordingEmitter emitter = new RecordingEmitter();
+            hub.subscribe(1, EMAIL, emitter);
+
+            hub.heartbeat();
+
+            assertThat(emitter.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            hub.shutdown();
+        }
+    }
+
+    /**
+     * Один поток отправки и буфер на 2 события: любой зависший подписчик занимает весь пул
+     */
+    private static CommentStreamHub hub(Duration sendTimeout, int maxStalledDispatchers, int maxPerUser) {
+        return new CommentStreamHub(new ObjectMapper(), Mockito.mock(AdsRepository.class), 2, 1,
+                maxStalledDispatchers, maxPerUser, Duration.ofMinutes(1), sendTimeout, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Клиент, который не читает: отправка висит, пока ее не отпустят или, если interruptible, не прервут поток
+     */
+    private static class BlockingEmitter extends SseEmitter {
+
+        final boolean interruptible;
+
+        final CountDownLatch sending = new CountDownLatch(1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        BlockingEmitter(boolean interruptible) {
+            this.interruptible = interruptible;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            while (true) {
+                try {
+                    release.await();
+                    return;
+                } catch (InterruptedException e) {
+                    if (interruptible) {
+                        throw new InterruptedIOException();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public synchronized void completeWithError(Throwable ex) {
+            completed.countDown();
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        final CountDownLatch sent = new CountDownLatch(1);
+
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sent.countDown();
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+    }
+
+    private static CreateComment createComment(String text) {
+        CreateComment createComment = new CreateComment();
+        createComment.setText(text);
+        return createComment;
+    }
+
+    /**
+     * Содержимое потока, как только в нем появится ожидаемая строка; события отправляются в другом потоке
+     */
+    private static String awaitContent(MvcResult stream, String expected) throws Exception {
+        String content = "";
+        for (int i = 0; i < 50 && !content.contains(expected); i++) {
+            Thread.sleep(100);
+            content = stream.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        }
+        return content;
+    }
+}
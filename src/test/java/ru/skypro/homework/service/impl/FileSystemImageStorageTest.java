@@ -0,0 +1,153 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.repository.ImageRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Одинаковые картинки хранятся одним файлом, файл удаляется вместе с последней ссылкой на хеш
+ * после срока ожидания и не удаляется, пока другая транзакция, в том числе другого экземпляра, записывает тот же хеш
+ */
+@SpringBootTest(properties = {"image.storage.type=fs", "image.storage.path=target/test-images"})
+class FileSystemImageStorageTest {
+
+    @Autowired
+    private FileSystemImageStorage imageStorage;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${image.storage.path}")
+    private String root;
+
+    @Test
+    void sameContentIsStoredOnceAndDeletedWithLastReference() throws IOException {
+        byte[] data = uniqueData();
+        ImageEntity first = save(data);
+        ImageEntity second = save(data);
+        assertThat(first.getHash()).isEqualTo(second.getHash());
+        Path file = file(first.getHash());
+        assertThat(file).exists();
+        try (var files = Files.list(file.getParent())) {
+            assertThat(files.filter(path -> path.getFileName().toString().startsWith(first.getHash()))).hasSize(1);
+        }
+
+        imageRepository.deleteById(first.getId());
+        imageStorage.delete(first);
+        assertThat(file).exists();
+
+        imageRepository.deleteById(second.getId());
+        imageStorage.delete(second);
+        assertThat(file).exists(); // файл моложе срока ожидания
+
+        age(file);
+        imageStorage.delete(second);
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void deleteKeepsFileStoredByUncommittedTransactionOfAnotherInstance() throws Exception {
+        byte[] data = uniqueData();
+        ImageEntity deleted = save(data);
+        imageRepository.deleteById(deleted.getId());
+        age(file(deleted.getHash()));
+        // второй экземпляр приложения с тем же каталогом
+        FileSystemImageStorage otherStorage = new FileSystemImageStorage(root, imageRepository, Duration.ofHours(1));
+        CountDownLatch stored = new CountDownLatch(1);
+        CountDownLatch deletedDone = new CountDownLatch(1);
+        CompletableFuture<ImageEntity> upload = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    ImageEntity image = ImageServiceImpl.newImage(data, "image/png");
+                    try {
+                        otherStorage.store(image, data);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    imageRepository.save(image);
+                    stored.countDown();
+                    try {
+                        deletedDone.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return image;
+                }));
+        assertThat(stored.await(10, TimeUnit.SECONDS)).isTrue();
+
+        imageStorage.delete(deleted); // строки уже нет, а новая еще не закоммичена
+        deletedDone.countDown();
+
+        ImageEntity uploaded = upload.get(10, TimeUnit.SECONDS);
+        assertThat(imageRepository.existsById(uploaded.getId())).isTrue();
+        assertThat(file(uploaded.getHash())).exists();
+    }
+
+    @Test
+    void deleteUnreferencedRemovesOnlyOldFilesWithoutReferences() throws IOException {
+        ImageEntity kept = save(uniqueData());
+        ImageEntity young = save(uniqueData());
+        ImageEntity old = save(uniqueData());
+        imageRepository.deleteById(young.getId());
+        imageRepository.deleteById(old.getId());
+        age(file(kept.getHash()));
+        age(file(old.getHash()));
+        Path leftover = Files.createTempFile(file(kept.getHash()).getParent(), kept.getHash(), ".tmp");
+        age(leftover);
+
+        imageStorage.deleteUnreferenced(Instant.now().minus(Duration.ofHours(1)));
+
+        assertThat(file(kept.getHash())).exists();
+        assertThat(file(young.getHash())).exists();
+        assertThat(file(old.getHash())).doesNotExist();
+        assertThat(leftover).doesNotExist();
+    }
+
+    private ImageEntity save(byte[] data) {
+        return transactionTemplate.execute(status -> {
+            ImageEntity image = ImageServiceImpl.newImage(data, "image/png");
+            try {
+                imageStorage.store(image, data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return imageRepository.save(image);
+        });
+    }
+
+    /**
+     * Файл будто записан два часа назад, раньше срока ожидания
+     */
+    private static void age(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+    }
+
+    private Path file(String hash) {
+        return Paths.get(root).toAbsolutePath().resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static byte[] uniqueData() {
+        return UUID.randomUUID().toString().getBytes();
+    }
+}
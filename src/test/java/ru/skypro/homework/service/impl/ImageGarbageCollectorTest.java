@@ -0,0 +1,119 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.skypro.homework.TestData.authentication;
+import static ru.skypro.homework.TestData.createAds;
+import static ru.skypro.homework.TestData.image;
+import static ru.skypro.homework.TestData.user;
+
+/**
+ * Замена и удаление картинок не оставляют неиспользуемых строк image,
+ * а сборщик удаляет только картинки без ссылок старше срока ожидания
+ */
+@SpringBootTest
+class ImageGarbageCollectorTest {
+
+    private static final String EMAIL = "gc@test.ru";
+
+    @Autowired
+    private ImageGarbageCollector imageGarbageCollector;
+
+    @Autowired
+    private AdsReaper adsReaper;
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Authentication authentication = authentication(EMAIL);
+
+    private UserEntity author;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        imageGarbageCollector.collect(LocalDateTime.now().plusDays(1));
+        author = user(userRepository, EMAIL);
+    }
+
+    @Test
+    void updateImageDeletesPreviousImage() {
+        Ads ads = adsService.createAds(createAds("Объявление с картинкой"), image("первая"), authentication);
+        Integer first = adsRepository.findImageIdById(ads.getPk());
+
+        adsService.updateImage(ads.getPk(), image("вторая"));
+
+        Integer second = adsRepository.findImageIdById(ads.getPk());
+        assertThat(second).isNotEqualTo(first);
+        assertThat(imageRepository.existsById(first)).isFalse();
+        assertThat(imageRepository.existsById(second)).isTrue();
+    }
+
+    @Test
+    void deleteAdsKeepsImageSharedWithAnotherAd() {
+        Ads ads = adsService.createAds(createAds("Объявление с картинкой"), image("общая"), authentication);
+        Integer imageId = adsRepository.findImageIdById(ads.getPk());
+        AdsEntity other = transactionTemplate.execute(status -> {
+            AdsEntity adsEntity = new AdsEntity();
+            adsEntity.setTitle("Вторая ссылка");
+            adsEntity.setAuthor(author);
+            adsEntity.setImageEntity(imageRepository.getReferenceById(imageId));
+            return adsRepository.save(adsEntity);
+        });
+
+        adsService.deleteAds(ads.getPk());
+        adsReaper.reapAll();
+        assertThat(imageRepository.existsById(imageId)).isTrue();
+
+        adsService.deleteAds(other.getId());
+        adsReaper.reapAll();
+        assertThat(imageRepository.existsById(imageId)).isFalse();
+    }
+
+    @Test
+    void collectDeletesOnlyOldUnreferencedImages() throws Exception {
+        ImageEntity oldOrphan = orphan(LocalDateTime.now().minusDays(1));
+        ImageEntity freshOrphan = orphan(LocalDateTime.now());
+        Ads ads = adsService.createAds(createAds("Объявление с картинкой"), image("используется"), authentication);
+        Integer used = adsRepository.findImageIdById(ads.getPk());
+
+        assertThat(imageGarbageCollector.collect(LocalDateTime.now().minusHours(1))).isEqualTo(1);
+
+        assertThat(imageRepository.existsById(oldOrphan.getId())).isFalse();
+        assertThat(imageRepository.existsById(freshOrphan.getId())).isTrue();
+        assertThat(imageRepository.existsById(used)).isTrue();
+    }
+
+    private ImageEntity orphan(LocalDateTime createdAt) {
+        ImageEntity image = ImageServiceImpl.newImage(new byte[]{1, 2, 3}, "image/png");
+        image.setCreatedAt(createdAt);
+        return imageRepository.save(image);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.Test;
+import ru.skypro.homework.exception.UploadRejectedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * При занятых потоках и полной очереди загрузка отклоняется сразу, а не ждет
+ */
+class ImageUploadExecutorTest {
+
+    @Test
+    void uploadIsRejectedWhenQueueIsFull() throws Exception {
+        ImageUploadExecutor executor = new ImageUploadExecutor(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<String> running = executor.submit(() -> {
+                started.countDown();
+                release.await();
+                return "первая";
+            });
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<String> queued = executor.submit(() -> "вторая");
+
+            assertThatThrownBy(() -> executor.submit(() -> "третья")).isInstanceOf(UploadRejectedException.class);
+
+            release.countDown();
+            assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("первая");
+            assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("вторая");
+            assertThat(executor.submit(() -> "после очереди").get(5, TimeUnit.SECONDS)).isEqualTo("после очереди");
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.service.ImageService;
+import ru.skypro.homework.service.ImageStorage;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Уменьшенные копии строятся после коммита загрузки и сохраняются в базе,
+ * в том числе когда очередь построения переполнена
+ */
+@SpringBootTest(properties = {"image.storage.type=fs", "image.storage.path=target/test-images"})
+class ImageVariantGeneratorTest {
+
+    private static final List<Integer> WIDTHS = List.of(160, 320, 640);
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ImageStorage imageStorage;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void variantsAreGeneratedAfterUpload() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("image", "image.png", "image/png", png(Color.RED));
+        ImageEntity original = transactionTemplate.execute(status -> {
+            try {
+                return imageService.downloadImage(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        assertThat(awaitVariants(original.getId())).containsExactlyInAnyOrderElementsOf(WIDTHS);
+    }
+
+    @Test
+    void variantsArePersistedWhenQueueIsFull() throws Exception {
+        BlockingStorage storage = new BlockingStorage(imageStorage);
+        // один поток и очередь на одну задачу: третья картинка ждет места в очереди
+        ImageVariantGenerator generator = new ImageVariantGenerator(imageRepository, storage, transactionManager,
+                WIDTHS, 0.8f, 1, 1, Duration.ofSeconds(10));
+        try {
+            List<Integer> originals = List.of(original(Color.GREEN), original(Color.BLUE), original(Color.YELLOW));
+            new Thread(() -> {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                storage.release.countDown();
+            }).start();
+
+            transactionTemplate.executeWithoutResult(status -> originals.forEach(generator::generateAfterCommit));
+
+            for (Integer id : originals) {
+                assertThat(awaitVariants(id)).containsExactlyInAnyOrderElementsOf(WIDTHS);
+            }
+            assertThat(storage.storingThreads).allMatch(name -> name.startsWith("image-variants-"));
+        } finally {
+            storage.release.countDown();
+            generator.shutdown();
+        }
+    }
+
+    private Integer original(Color color) throws IOException {
+        byte[] data = png(color);
+        return transactionTemplate.execute(status -> {
+            ImageEntity image = ImageServiceImpl.newImage(data, "image/png");
+            try {
+                imageStorage.store(image, data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return imageRepository.save(image).getId();
+        });
+    }
+
+    /**
+     * Ширины копий картинки, как только построены все; копии строятся в другом потоке
+     */
+    private List<Integer> awaitVariants(Integer originalId) throws InterruptedException {
+        List<ImageEntity> variants = List.of();
+        for (int i = 0; i < 100 && variants.size() < WIDTHS.size(); i++) {
+            Thread.sleep(100);
+            variants = imageRepository.findByOriginalId(originalId);
+        }
+        return variants.stream().map(ImageEntity::getWidth).collect(Collectors.toList());
+    }
+
+    private static byte[] png(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 800, 600);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Хранилище, в котором чтение картинок ждет release, и потоки, сохранявшие копии
+     */
+    private static class BlockingStorage implements ImageStorage {
+
+        final ImageStorage delegate;
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final Set<String> storingThreads = ConcurrentHashMap.newKeySet();
+
+        BlockingStorage(ImageStorage delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void store(ImageEntity image, byte[] data) throws IOException {
+            storingThreads.add(Thread.currentThread().getName());
+            delegate.store(image, data);
+        }
+
+        @Override
+        public void store(ImageEntity image, Path content) throws IOException {
+            storingThreads.add(Thread.currentThread().getName());
+            delegate.store(image, content);
+        }
+
+        @Override
+        public Resource load(ImageEntity image) throws IOException {
+            try {
+                if (!release.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("Хранилище не отпустили");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return delegate.load(image);
+        }
+
+        @Override
+        public void delete(ImageEntity image) throws IOException {
+            delegate.delete(image);
+        }
+    }
+}
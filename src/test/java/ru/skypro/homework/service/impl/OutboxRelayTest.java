@@ -0,0 +1,104 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.DomainEvent;
+import ru.skypro.homework.dto.DomainEventType;
+import ru.skypro.homework.service.OutboxService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * События пишутся только в транзакции изменения и публикуются с позициями без пропусков
+ */
+@SpringBootTest
+class OutboxRelayTest {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private InMemoryEventSink eventSink;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long position;
+
+    @BeforeEach
+    void drain() {
+        outboxRelay.relay();
+        List<DomainEvent> published = outboxService.getEvents(0, Integer.MAX_VALUE);
+        position = published.isEmpty() ? 0 : published.get(published.size() - 1).getPosition();
+    }
+
+    @Test
+    void recordRequiresTransaction() {
+        assertThatThrownBy(() -> outboxService.record(DomainEventType.ADS_DELETED, 1, null))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+
+    @Test
+    void rolledBackEventIsNotPublished() {
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxService.record(DomainEventType.ADS_DELETED, 1, null);
+            status.setRollbackOnly();
+        });
+        assertThat(outboxRelay.publishBatch()).isZero();
+    }
+
+    @Test
+    void publishedEventsGetNextPositions() {
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxService.record(DomainEventType.COMMENT_DELETED, 1, Map.of("pk", 2));
+            outboxService.record(DomainEventType.ADS_DELETED, 1, null);
+        });
+        assertThat(outboxService.getEvents(position, null)).isEmpty();
+
+        assertThat(outboxRelay.publishBatch()).isEqualTo(2);
+
+        assertThat(eventSink.getEvents(position))
+                .extracting(DomainEvent::getPosition, DomainEvent::getType, DomainEvent::getPayload)
+                .containsExactly(
+                        tuple(position + 1, DomainEventType.COMMENT_DELETED, "{\"pk\":2}"),
+                        tuple(position + 2, DomainEventType.ADS_DELETED, null));
+        assertThat(outboxService.getEvents(position + 1, null))
+                .extracting(DomainEvent::getPosition)
+                .containsExactly(position + 2);
+    }
+
+    @Test
+    void positionsContinueAfterCleanupOfAllPublishedEvents() {
+        transactionTemplate.executeWithoutResult(status -> outboxService.record(DomainEventType.ADS_DELETED, 1, null));
+        outboxRelay.publishBatch();
+        jdbcTemplate.update("UPDATE outbox_event SET created_at = ?", LocalDateTime.of(2000, 1, 1, 0, 0));
+
+        outboxRelay.cleanup();
+
+        assertThat(outboxService.getEvents(0, null))
+                .extracting(DomainEvent::getPosition)
+                .containsExactly(position + 1);
+        transactionTemplate.executeWithoutResult(status -> outboxService.record(DomainEventType.ADS_DELETED, 2, null));
+        outboxRelay.publishBatch();
+        assertThat(outboxService.getEvents(position + 1, null))
+                .extracting(DomainEvent::getPosition)
+                .containsExactly(position + 2);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.Authentication;
+import ru.skypro.homework.TestData;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.CreateComment;
+import ru.skypro.homework.dto.PopularBy;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+import ru.skypro.homework.service.CommentService;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.skypro.homework.TestData.authentication;
+import static ru.skypro.homework.TestData.image;
+import static ru.skypro.homework.TestData.user;
+
+/**
+ * Популярные объявления считаются по просмотрам и комментариям в памяти
+ * и восстанавливаются из комментариев в базе
+ */
+@SpringBootTest(properties = "ads.popular.size=1000")
+class PopularAdsTrackerTest {
+
+    private static final String EMAIL = "popular@test.ru";
+
+    @Autowired
+    private PopularAdsTracker popularAdsTracker;
+
+    @Autowired
+    private AdsViewCounter adsViewCounter;
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final Authentication authentication = authentication(EMAIL);
+
+    @BeforeEach
+    void setUp() {
+        user(userRepository, EMAIL);
+    }
+
+    @Test
+    void ranksByViewsAndCommentsAndRebuildsComments() {
+        int first = createAds();
+        int second = createAds();
+        int third = createAds();
+        comment(second, 3);
+        comment(first, 1);
+        view(third, 2);
+        view(first, 1);
+
+        popularAdsTracker.refresh();
+
+        List<Integer> ours = List.of(first, second, third);
+        assertThat(popular(PopularBy.COMMENTS, ours)).containsExactly(second, first);
+        assertThat(popular(PopularBy.VIEWS, ours)).containsExactly(third, first);
+
+        popularAdsTracker.rebuild();
+        assertThat(popular(PopularBy.COMMENTS, ours)).containsExactly(second, first);
+
+        adsService.deleteAds(second);
+        popularAdsTracker.refresh();
+        assertThat(popular(PopularBy.COMMENTS, ours)).containsExactly(first);
+        assertThat(popularAdsTracker.getPopular(PopularBy.VIEWS, 1)).hasSize(1);
+    }
+
+    private List<Integer> popular(PopularBy by, List<Integer> ours) {
+        return popularAdsTracker.getPopular(by, Integer.MAX_VALUE).stream()
+                .map(Ads::getPk)
+                .filter(ours::contains)
+                .collect(Collectors.toList());
+    }
+
+    private int createAds() {
+        return adsService.createAds(TestData.createAds("Популярное объявление"), image(), authentication).getPk();
+    }
+
+    private void comment(int adsId, int count) {
+        for (int i = 0; i < count; i++) {
+            CreateComment createComment = new CreateComment();
+            createComment.setText("Комментарий " + i);
+            commentService.addComment(adsId, createComment, authentication);
+        }
+    }
+
+    private void view(int adsId, int count) {
+        for (int i = 0; i < count; i++) {
+            adsViewCounter.viewed(adsService.getAds(adsId));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package ru.skypro.homework.service.impl;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skypro.homework.dto.Ads;
+import ru.skypro.homework.dto.AdsFilter;
+import ru.skypro.homework.dto.AdsSort;
+import ru.skypro.homework.entity.AdsEntity;
+import ru.skypro.homework.entity.CommentEntity;
+import ru.skypro.homework.entity.ImageEntity;
+import ru.skypro.homework.entity.UserEntity;
+import ru.skypro.homework.mapper.AdsMapper;
+import ru.skypro.homework.repository.AdsRepository;
+import ru.skypro.homework.repository.CommentRepository;
+import ru.skypro.homework.repository.ImageRepository;
+import ru.skypro.homework.repository.UserRepository;
+import ru.skypro.homework.service.AdsService;
+import ru.skypro.homework.service.CommentService;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Списки объявлений и комментариев строятся постоянным числом SQL-запросов, без N+1
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class StatementCountTest {
+
+    private static final int ROWS = 10;
+
+    @Autowired
+    private AdsService adsService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private AdsRepository adsRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private AdsMapper adsMapper;
+
+    private Statistics statistics;
+
+    private UserEntity author;
+
+    private AdsEntity ad;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            commentRepository.deleteAll();
+            adsRepository.deleteAll();
+            userRepository.deleteAll();
+            imageRepository.deleteAll();
+
+            author = new UserEntity();
+            author.setEmail("author@test.ru");
+            author.setFirstName("Автор");
+            author.setImageEntity(image());
+            userRepository.save(author);
+
+            for (int i = 0; i < ROWS; i++) {
+                AdsEntity adsEntity = new AdsEntity();
+                adsEntity.setTitle("Объявление " + i);
+                adsEntity.setAuthor(author);
+                adsEntity.setImageEntity(image());
+                ad = adsRepository.save(adsEntity);
+            }
+
+            for (int i = 0; i < ROWS; i++) {
+                UserEntity commentator = new UserEntity();
+                commentator.setEmail("user" + i + "@test.ru");
+                commentator.setImageEntity(image());
+                userRepository.save(commentator);
+
+                CommentEntity comment = new CommentEntity();
+                comment.setAd(ad);
+                comment.setAuthor(commentator);
+                comment.setText("Комментарий " + i);
+                comment.setCreatedAt(LocalDateTime.now());
+                commentRepository.save(comment);
+            }
+        });
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllAdsRunsOneStatement() {
+        assertThat(adsService.getAllAds(new AdsFilter(), null, ROWS).getResults()).hasSize(ROWS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void feedSelectsCardColumnsWithoutLoadingEntities() {
+        AdsEntity withoutImage = transactionTemplate.execute(status -> {
+            AdsEntity adsEntity = new AdsEntity();
+            adsEntity.setTitle("Без картинки");
+            adsEntity.setAuthor(author);
+            return adsRepository.save(adsEntity);
+        });
+        statistics.clear();
+
+        Collection<Ads> feed = adsService.getAllAds(new AdsFilter(), null, ROWS + 1).getResults();
+
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        Collection<Ads> expected = transactionTemplate.execute(status -> adsMapper.adsEntityToCollectionDto(adsRepository.findAll()));
+        assertThat(feed).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(feed).extracting("image").contains("/ads/" + withoutImage.getId() + "/image");
+    }
+
+    @Test
+    void searchSelectsSameCardsAsMapper() {
+        AdsEntity withoutImage = transactionTemplate.execute(status -> {
+            AdsEntity adsEntity = new AdsEntity();
+            adsEntity.setTitle("Объявление без картинки");
+            adsEntity.setAuthor(author);
+            return adsRepository.save(adsEntity);
+        });
+        AdsFilter filter = new AdsFilter();
+        filter.setTitle("объявление");
+
+        Collection<Ads> found = adsService.getAllAds(filter, null, ROWS + 1).getResults();
+
+        Collection<Ads> expected = transactionTemplate.execute(status -> adsMapper.adsEntityToCollectionDto(adsRepository.findAll()));
+        assertThat(found).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(found).extracting("image").contains("/ads/" + withoutImage.getId() + "/image");
+    }
+
+    @Test
+    void searchAdsRunsOneStatement() {
+        AdsFilter filter = new AdsFilter();
+        filter.setTitle("объявление");
+        assertThat(adsService.getAllAds(filter, null, ROWS).getResults()).hasSize(ROWS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void filteredAdsRunsOneStatement() {
+        AdsFilter filter = new AdsFilter();
+        filter.setMinPrice(0);
+        filter.setAuthor(author.getId());
+        filter.setSort(AdsSort.PRICE_DESC);
+        assertThat(adsService.getAllAds(filter, null, ROWS).getResults()).hasSize(ROWS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getAdsMeRunsTwoStatements() {
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(author.getEmail(), null);
+        assertThat(adsService.getAdsMe(authentication)).hasSize(ROWS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void getAdsRunsOneStatement() {
+        assertThat(adsService.getAds(ad.getId()).getAuthorFirstName()).isEqualTo("Автор");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getCommentsRunsOneStatement() {
+        assertThat(commentService.getComments(ad.getId(), null, null).getResults()).hasSize(ROWS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private ImageEntity image() {
+        ImageEntity image = new ImageEntity();
+        image.setMediaType("image/png");
+        image.setData(new byte[]{1, 2, 3});
+        return imageRepository.save(image);
+    }
+}
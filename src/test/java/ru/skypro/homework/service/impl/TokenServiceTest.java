@@ -0,0 +1,115 @@
+package ru.skypro.homework.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import ru.skypro.homework.dto.NewPassword;
+import ru.skypro.homework.dto.RegisterReq;
+import ru.skypro.homework.dto.Role;
+import ru.skypro.homework.service.AuthService;
+import ru.skypro.homework.service.TokenService;
+import ru.skypro.homework.service.UserService;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Токен из /login принимается до истечения срока и до смены пароля, подделанный токен не принимается
+ */
+@SpringBootTest
+class TokenServiceTest {
+
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Value("${auth.token.secret}")
+    private String secret;
+
+    private String email;
+
+    @BeforeEach
+    void setUp() {
+        email = "token-" + UUID.randomUUID() + "@test.ru";
+        RegisterReq registerReq = new RegisterReq();
+        registerReq.setUsername(email);
+        registerReq.setPassword(PASSWORD);
+        assertThat(authService.register(registerReq, Role.USER)).isTrue();
+    }
+
+    @Test
+    void tokenFromLoginIsVerified() {
+        String token = authService.login(email, PASSWORD).orElseThrow();
+
+        Authentication authentication = tokenService.verify(token).orElseThrow();
+
+        assertThat(authentication.getName()).isEqualTo(email);
+        assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_USER");
+        assertThat(authService.login(email, "wrong")).isEmpty();
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String token = authService.login(email, PASSWORD).orElseThrow();
+        int dot = token.indexOf('.');
+        String otherToken = authService.login(email, PASSWORD).orElseThrow();
+
+        assertThat(tokenService.verify(token.substring(0, dot) + "x" + token.substring(dot))).isEmpty();
+        assertThat(tokenService.verify(token.substring(0, dot) + otherToken.substring(otherToken.indexOf('.')) + "x")).isEmpty();
+        assertThat(tokenService.verify("not-a-token")).isEmpty();
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        TokenService expiring = new TokenServiceImpl(secret, Duration.ofSeconds(-1), new MockEnvironment(), userDetailsService);
+
+        String token = expiring.createToken(userDetailsService.loadUserByUsername(email));
+
+        assertThat(expiring.verify(token)).isEmpty();
+    }
+
+    @Test
+    void passwordChangeRevokesIssuedTokens() {
+        String token = authService.login(email, PASSWORD).orElseThrow();
+        NewPassword newPassword = new NewPassword();
+        newPassword.setCurrentPassword(PASSWORD);
+        newPassword.setNewPassword("new-password");
+
+        userService.setNewPassword(newPassword, new UsernamePasswordAuthenticationToken(email, null));
+
+        assertThat(tokenService.verify(token)).isEmpty();
+        String newToken = authService.login(email, "new-password").orElseThrow();
+        assertThat(tokenService.verify(newToken)).isPresent();
+    }
+
+    @Test
+    void missingSecretFailsStartupOutsideDevProfile() {
+        assertThatThrownBy(() -> new TokenServiceImpl("", Duration.ofHours(1), new MockEnvironment(), userDetailsService))
+                .isInstanceOf(IllegalStateException.class);
+
+        MockEnvironment dev = new MockEnvironment();
+        dev.setActiveProfiles("dev");
+        TokenService random = new TokenServiceImpl("", Duration.ofHours(1), dev, userDetailsService);
+        assertThat(random.verify(random.createToken(userDetailsService.loadUserByUsername(email)))).isPresent();
+    }
+}
@@ -0,0 +1,106 @@
+package ru.skypro.homework.service.impl;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.skypro.homework.dto.NewPassword;
+import ru.skypro.homework.dto.RegisterReq;
+import ru.skypro.homework.dto.Role;
+import ru.skypro.homework.service.AuthService;
+import ru.skypro.homework.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Пользователи читаются из кеша без транзакции, смена пароля сбрасывает запись, и старый пароль больше не подходит
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class UserDetailsServiceTest {
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void cachedUserIsEvictedOnPasswordChange() {
+        String email = register("old-password");
+        UserDetails cached = userDetailsService.loadUserByUsername(email.toUpperCase());
+        // пароль, измененный в обход сервиса, не виден, пока пользователь в кеше
+        jdbcTemplate.update("UPDATE users SET password = 'changed' WHERE email = ?", email);
+        assertThat(userDetailsService.loadUserByUsername(email).getPassword()).isEqualTo(cached.getPassword());
+
+        NewPassword newPassword = new NewPassword();
+        newPassword.setCurrentPassword("old-password");
+        newPassword.setNewPassword("new-password");
+        userService.setNewPassword(newPassword, new UsernamePasswordAuthenticationToken(email, null));
+
+        UserDetails reloaded = userDetailsService.loadUserByUsername(email);
+        assertThat(passwordEncoder.matches("new-password", reloaded.getPassword())).isTrue();
+        assertThat(authService.login(email, "old-password")).isEmpty();
+        assertThat(authService.login(email, "new-password")).isPresent();
+    }
+
+    @Test
+    void cachedUserIsReturnedWithoutTransaction() {
+        String email = register("password");
+        userDetailsService.loadUserByUsername(email);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        userDetailsService.loadUserByUsername(email);
+
+        assertThat(statistics.getSessionOpenCount()).isZero();
+        assertThat(statistics.getTransactionCount()).isZero();
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void returnedUserKeepsPasswordAfterCallerErasesCredentials() {
+        String email = register("password");
+        UserDetails first = userDetailsService.loadUserByUsername(email);
+        ((User) first).eraseCredentials();
+
+        assertThat(userDetailsService.loadUserByUsername(email).getPassword()).isNotNull();
+    }
+
+    @Test
+    void unknownUserIsNotFound() {
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername("missing-" + UUID.randomUUID() + "@test.ru"))
+                .isInstanceOf(UsernameNotFoundException.class);
+    }
+
+    private String register(String password) {
+        String email = "details-" + UUID.randomUUID() + "@test.ru";
+        RegisterReq registerReq = new RegisterReq();
+        registerReq.setUsername(email);
+        registerReq.setPassword(password);
+        assertThat(authService.register(registerReq, Role.USER)).isTrue();
+        return email;
+    }
+}